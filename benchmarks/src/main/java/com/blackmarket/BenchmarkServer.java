@@ -0,0 +1,90 @@
+package com.blackmarket;
+
+import com.blackmarket.data.MarketItem;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mock server with the plugin loaded, plus the items the benchmarks work with.
+ * MockBukkit provides the Bukkit implementation, so ItemStacks, inventories and
+ * players behave like they do on a server. Only one server can run per JVM.
+ */
+public final class BenchmarkServer {
+    private static final Material[] GEAR = {
+        Material.DIAMOND_SWORD, Material.DIAMOND_PICKAXE, Material.DIAMOND_CHESTPLATE, Material.BOW
+    };
+    private static final Enchantment[] ENCHANTMENTS = {
+        Enchantment.UNBREAKING, Enchantment.MENDING, Enchantment.EFFICIENCY, Enchantment.SHARPNESS
+    };
+
+    private final ServerMock server;
+    private final BlackMarket plugin;
+
+    private BenchmarkServer(ServerMock server, BlackMarket plugin) {
+        this.server = server;
+        this.plugin = plugin;
+    }
+
+    public static BenchmarkServer start() {
+        ServerMock server = MockBukkit.mock();
+        BlackMarket plugin = MockBukkit.load(BlackMarket.class);
+        // Data loads in the background; items added before it finishes would be replaced
+        plugin.getDataManager().whenReady().join();
+        return new BenchmarkServer(server, plugin);
+    }
+
+    public void stop() {
+        MockBukkit.unmock();
+    }
+
+    public ServerMock getServer() {
+        return server;
+    }
+
+    public BlackMarket getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Add pool items until the pool holds the given number of items
+     */
+    public void fillPool(int size) {
+        for (int i = plugin.getDataManager().getPoolSize(); i < size; i++) {
+            plugin.getDataManager().addItemToPool(createMarketItem(i));
+        }
+    }
+
+    /**
+     * A pool item priced in plain materials and one piece of enchanted gear
+     */
+    public static MarketItem createMarketItem(int index) {
+        List<ItemStack> costs = new ArrayList<>();
+        costs.add(new ItemStack(Material.DIAMOND, 1 + index % 32));
+        costs.add(new ItemStack(Material.EMERALD, 1 + index % 16));
+        costs.add(enchantedGear(index));
+        return new MarketItem(enchantedGear(index + 1), costs, 1 + index % 100);
+    }
+
+    /**
+     * Named, enchanted gear; items with different variants are not similar
+     */
+    public static ItemStack enchantedGear(int variant) {
+        ItemStack item = new ItemStack(GEAR[variant % GEAR.length]);
+        ItemMeta meta = item.getItemMeta();
+        meta.displayName(Component.text("Gear #" + variant));
+        meta.lore(List.of(Component.text("Variant " + variant), Component.text("Forged for benchmarks")));
+        for (int i = 0; i < ENCHANTMENTS.length; i++) {
+            meta.addEnchant(ENCHANTMENTS[i], 1 + (variant + i) % 3, true);
+        }
+        item.setItemMeta(meta);
+        return item;
+    }
+}
@@ -0,0 +1,63 @@
+package com.blackmarket.data;
+
+import com.blackmarket.BenchmarkServer;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weighted item selection done by RotationManager on every rotation.
+ * sample reuses the sampler like rotations without pool changes do;
+ * rebuildAndSample also pays for the rebuild that follows a pool edit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RotationBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int poolSize;
+
+    @Param({"3", "32"})
+    public int itemsPerRotation;
+
+    private BenchmarkServer server;
+    private List<MarketItem> pool;
+    private WeightedSampler sampler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+
+        // Costs do not affect selection, so the pool items are kept cheap to build
+        ItemStack display = new ItemStack(Material.DIAMOND);
+        pool = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            pool.add(new MarketItem(display, List.of(), 1 + i % 100));
+        }
+        sampler = new WeightedSampler(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public List<UUID> sample() {
+        return sampler.sample(itemsPerRotation, ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public List<UUID> rebuildAndSample() {
+        return new WeightedSampler(pool).sample(itemsPerRotation, ThreadLocalRandom.current());
+    }
+}
@@ -0,0 +1,110 @@
+package com.blackmarket.data;
+
+import com.blackmarket.BenchmarkServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * What DataManager.saveData and loadData hand to the file backend: writing a
+ * snapshot of the pool and reading it back on startup, with one purchase of
+ * an active item stored per player. Runs against a temporary directory.
+ * Items keep their serialized form between saves, as they do in the plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final Logger LOGGER = Logger.getLogger("BlackMarket-Benchmark");
+    private static final int JOURNAL_MAX_RECORDS = 5000;
+
+    @Param({"100", "1000", "10000"})
+    public int poolSize;
+
+    @Param({"0", "1000", "10000"})
+    public int playerCount;
+
+    private BenchmarkServer server;
+    private File dataFolder;
+    private DataSnapshot snapshot;
+    private DataSnapshot rotationSnapshot;
+    private FileStorageBackend backend;
+    private UUID lastPlayer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = BenchmarkServer.start();
+        dataFolder = Files.createTempDirectory("blackmarket-bench").toFile();
+
+        List<MarketItem> pool = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            pool.add(BenchmarkServer.createMarketItem(i));
+        }
+        List<UUID> activeItemIds = pool.stream().limit(3).map(MarketItem::getId).toList();
+        snapshot = new DataSnapshot(pool, activeItemIds, System.currentTimeMillis());
+        rotationSnapshot = new DataSnapshot(pool, activeItemIds, snapshot.lastRotationTime(), null,
+            EnumSet.of(DataSnapshot.Section.ACTIVE_ITEMS));
+
+        Map<UUID, Set<UUID>> purchases = new HashMap<>();
+        lastPlayer = UUID.randomUUID();
+        for (int i = 0; i < playerCount; i++) {
+            lastPlayer = UUID.randomUUID();
+            purchases.put(lastPlayer, Set.of(activeItemIds.get(i % activeItemIds.size())));
+        }
+
+        backend = new FileStorageBackend(dataFolder, LOGGER, JOURNAL_MAX_RECORDS);
+        backend.load();
+        backend.importData(snapshot, purchases);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        backend.close();
+        try (var files = Files.walk(dataFolder.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+        server.stop();
+    }
+
+    @Benchmark
+    public FileStorageBackend saveData() throws IOException {
+        backend.save(snapshot);
+        return backend;
+    }
+
+    /**
+     * A save after only the rotation state changed, which copies the pool records
+     */
+    @Benchmark
+    public FileStorageBackend saveRotation() throws IOException {
+        backend.save(rotationSnapshot);
+        return backend;
+    }
+
+    @Benchmark
+    public DataSnapshot loadData() throws IOException {
+        FileStorageBackend loader = new FileStorageBackend(dataFolder, LOGGER, JOURNAL_MAX_RECORDS);
+        try {
+            return loader.load();
+        } finally {
+            loader.close();
+        }
+    }
+
+    /**
+     * The per-player lookup done on login
+     */
+    @Benchmark
+    public Set<UUID> loadPurchases() throws IOException {
+        return backend.loadPurchases(lastPlayer);
+    }
+}
@@ -0,0 +1,81 @@
+package com.blackmarket.gui;
+
+import com.blackmarket.BenchmarkServer;
+import com.blackmarket.BlackMarket;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening the shop and admin menus, including building their lore.
+ * openShop cycles through playerCount players like a busy server does;
+ * openShopAfterEdit renders the shop again first, as after a cost or weight edit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShopRenderBenchmark {
+    @Param({"10", "1000"})
+    public int poolSize;
+
+    @Param({"1", "100"})
+    public int playerCount;
+
+    @Param({"3", "27"})
+    public int itemsPerRotation;
+
+    private BenchmarkServer server;
+    private PlayerShopGUI shopGUI;
+    private AdminGUI adminGUI;
+    private ShopRenderCache renderCache;
+    private PlayerMock[] players;
+    private int nextPlayer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+        BlackMarket plugin = server.getPlugin();
+        plugin.getConfig().set("items-per-rotation", itemsPerRotation);
+        server.fillPool(poolSize);
+        plugin.getRotationManager().performRotation();
+
+        shopGUI = new PlayerShopGUI(plugin, plugin.getDataManager());
+        adminGUI = new AdminGUI(plugin, plugin.getDataManager());
+        renderCache = plugin.getShopRenderCache();
+        players = new PlayerMock[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            players[i] = server.getServer().addPlayer();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    private PlayerMock nextPlayer() {
+        PlayerMock player = players[nextPlayer];
+        nextPlayer = (nextPlayer + 1) % players.length;
+        return player;
+    }
+
+    @Benchmark
+    public void openShop() {
+        shopGUI.open(nextPlayer());
+    }
+
+    @Benchmark
+    public void openShopAfterEdit() {
+        renderCache.invalidate();
+        shopGUI.open(nextPlayer());
+    }
+
+    @Benchmark
+    public void openAdmin() {
+        adminGUI.open(nextPlayer());
+    }
+}
@@ -0,0 +1,70 @@
+package com.blackmarket.utils;
+
+import com.blackmarket.BenchmarkServer;
+import com.blackmarket.data.MarketItem;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost checks done on every purchase click. The player holds the cost at the end of
+ * their inventory, after fullness percent of the other slots filled with enchanted
+ * gear of the same material as the gear in the cost, which is the worst case for matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CostMatchingBenchmark {
+    private static final int INVENTORY_SIZE = 36;
+
+    @Param({"0", "50", "100"})
+    public int fullness;
+
+    private BenchmarkServer server;
+    private MarketItem marketItem;
+    private Inventory inventory;
+    private ItemStack[] contents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+        marketItem = BenchmarkServer.createMarketItem(0);
+        List<ItemStack> costs = marketItem.viewCostItems();
+
+        inventory = Bukkit.createInventory(null, INVENTORY_SIZE);
+        int costSlot = INVENTORY_SIZE - costs.size();
+        int gearSlots = costSlot * fullness / 100;
+        for (int slot = 0; slot < gearSlots; slot++) {
+            // Same material as the cost gear, but never similar to it
+            inventory.setItem(slot, BenchmarkServer.enchantedGear(4 * (slot + 1)));
+        }
+        for (ItemStack cost : costs) {
+            inventory.setItem(costSlot++, cost);
+        }
+        contents = inventory.getContents();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * The purchase click path: check and remove with the matcher cached on the item. The inventory
+     * is put back afterwards, so the restore is part of the measurement
+     */
+    @Benchmark
+    public boolean purchase() {
+        CostMatcher.Plan plan = marketItem.getCostMatcher().plan(inventory);
+        boolean removed = plan.apply(inventory);
+        inventory.setContents(contents);
+        return removed;
+    }
+}
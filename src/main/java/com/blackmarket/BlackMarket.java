@@ -3,7 +3,13 @@ package com.blackmarket;
 import com.blackmarket.commands.BlackMarketCommand;
 import com.blackmarket.data.DataManager;
 import com.blackmarket.data.RotationManager;
+import com.blackmarket.gui.ShopRenderCache;
+import com.blackmarket.gui.ShopTimer;
 import com.blackmarket.listeners.GUIListener;
+import com.blackmarket.listeners.PlayerConnectionListener;
+import com.blackmarket.utils.MessageCatalog;
+import com.blackmarket.utils.MetricsLog;
+import com.blackmarket.utils.MetricsRegistry;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -12,25 +18,42 @@ import org.bukkit.plugin.java.JavaPlugin;
 public class BlackMarket extends JavaPlugin {
     private DataManager dataManager;
     private RotationManager rotationManager;
+    private ShopRenderCache shopRenderCache;
+    private ShopTimer shopTimer;
+    private MessageCatalog messages;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private MetricsLog metricsLog;
 
     @Override
     public void onEnable() {
         // Save default config
         saveDefaultConfig();
+        messages = new MessageCatalog(this);
 
         // Initialize managers
         dataManager = new DataManager(this);
         rotationManager = new RotationManager(this, dataManager);
+        shopRenderCache = new ShopRenderCache(this, dataManager);
+        shopTimer = new ShopTimer(this);
 
         // Register commands
-        BlackMarketCommand command = new BlackMarketCommand(this, dataManager, rotationManager);
+        BlackMarketCommand command = new BlackMarketCommand(this, dataManager);
         getCommand("blackmarket").setExecutor(command);
 
         // Register listeners
         getServer().getPluginManager().registerEvents(new GUIListener(this, dataManager), this);
+        getServer().getPluginManager().registerEvents(new PlayerConnectionListener(dataManager, shopRenderCache), this);
 
         // Start rotation scheduler
         rotationManager.startRotationScheduler();
+        shopTimer.start();
+
+        // Log timings to metrics.csv if enabled
+        long logIntervalSeconds = getConfig().getLong("metrics.log-interval-seconds", 0);
+        if (logIntervalSeconds > 0) {
+            metricsLog = new MetricsLog(this, metrics, Math.max(1, getConfig().getLong("metrics.log-max-size-kb", 1024)) * 1024);
+            metricsLog.start(logIntervalSeconds);
+        }
 
         getLogger().info("BlackMarket plugin enabled!");
     }
@@ -41,10 +64,17 @@ public class BlackMarket extends JavaPlugin {
         if (rotationManager != null) {
             rotationManager.stopRotationScheduler();
         }
+        if (shopTimer != null) {
+            shopTimer.stop();
+        }
 
-        // Save data
+        if (metricsLog != null) {
+            metricsLog.stop();
+        }
+
+        // Flush pending changes and stop the background writer
         if (dataManager != null) {
-            dataManager.saveData();
+            dataManager.shutdown();
         }
 
         getLogger().info("BlackMarket plugin disabled!");
@@ -57,4 +87,20 @@ public class BlackMarket extends JavaPlugin {
     public RotationManager getRotationManager() {
         return rotationManager;
     }
+
+    public MessageCatalog getMessages() {
+        return messages;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public ShopRenderCache getShopRenderCache() {
+        return shopRenderCache;
+    }
+
+    public ShopTimer getShopTimer() {
+        return shopTimer;
+    }
 }
@@ -2,54 +2,138 @@ package com.blackmarket.commands;
 
 import com.blackmarket.BlackMarket;
 import com.blackmarket.data.DataManager;
-import com.blackmarket.data.RotationManager;
 import com.blackmarket.gui.AdminGUI;
 import com.blackmarket.gui.PlayerShopGUI;
-import com.blackmarket.utils.ItemUtils;
+import com.blackmarket.utils.MessageCatalog;
+import com.blackmarket.utils.MessageCatalog.Message;
+import com.blackmarket.utils.MetricsLog;
+import com.blackmarket.utils.MetricsRegistry;
+import com.blackmarket.utils.MetricsRegistry.Metric;
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.concurrent.CompletionException;
+
 /**
  * Command handler for /blackmarket
  */
 public class BlackMarketCommand implements CommandExecutor {
     private final BlackMarket plugin;
     private final DataManager dataManager;
-    private final RotationManager rotationManager;
 
-    public BlackMarketCommand(BlackMarket plugin, DataManager dataManager, RotationManager rotationManager) {
+    public BlackMarketCommand(BlackMarket plugin, DataManager dataManager) {
         this.plugin = plugin;
         this.dataManager = dataManager;
-        this.rotationManager = rotationManager;
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+            handleStats(sender);
+            return true;
+        }
+
+        // Data is loaded in the background after startup; run the command once it is in memory
+        if (!dataManager.isReady()) {
+            sender.sendMessage(plugin.getMessages().get(Message.DATA_LOADING));
+            dataManager.whenReady().thenRun(() -> runFor(sender, () -> onCommand(sender, command, label, args)));
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("migrate")) {
+            handleMigrate(sender, label, args);
+            return true;
+        }
+
         if (!(sender instanceof Player player)) {
-            sender.sendMessage("This command can only be used by players!");
+            sender.sendMessage(plugin.getMessages().get(Message.PLAYERS_ONLY));
             return true;
         }
 
         if (args.length > 0 && args[0].equalsIgnoreCase("admin")) {
             // Open admin GUI
             if (!player.hasPermission("blackmarket.admin") && !player.isOp()) {
-                player.sendMessage(ItemUtils.translateColorCodes(
-                    plugin.getConfig().getString("messages.no-permission", "&cYou don't have permission to do this!")
-                ));
+                player.sendMessage(plugin.getMessages().get(Message.NO_PERMISSION));
                 return true;
             }
 
-            new AdminGUI(plugin, dataManager, rotationManager).open(player);
-            player.sendMessage(ItemUtils.translateColorCodes(
-                plugin.getConfig().getString("messages.admin-opened", "&eOpened admin menu")
-            ));
+            new AdminGUI(plugin, dataManager).open(player);
+            player.sendMessage(plugin.getMessages().get(Message.ADMIN_OPENED));
             return true;
         }
 
         // Open player shop GUI
-        new PlayerShopGUI(plugin, dataManager, rotationManager).open(player);
+        new PlayerShopGUI(plugin, dataManager).open(player);
         return true;
     }
+
+    /**
+     * Show call counts and timings of the hot paths since startup
+     */
+    private void handleStats(CommandSender sender) {
+        if (!sender.hasPermission("blackmarket.admin") && !sender.isOp()) {
+            sender.sendMessage(plugin.getMessages().get(Message.NO_PERMISSION));
+            return;
+        }
+
+        MessageCatalog messages = plugin.getMessages();
+        sender.sendMessage(messages.get(Message.STATS_HEADER));
+        for (Metric metric : Metric.values()) {
+            MetricsRegistry.Snapshot stats = plugin.getMetrics().getTimer(metric).snapshot();
+            sender.sendMessage(messages.get(Message.STATS_LINE,
+                metric.getKey(),
+                stats.count(),
+                MetricsLog.millis(stats.percentileNanos(0.5)),
+                MetricsLog.millis(stats.percentileNanos(0.99)),
+                MetricsLog.millis(stats.maxNanos())
+            ));
+        }
+    }
+
+    /**
+     * Copy stored data between storage backends, e.g. /bm migrate file sqlite
+     */
+    private void handleMigrate(CommandSender sender, String label, String[] args) {
+        if (!sender.hasPermission("blackmarket.admin") && !sender.isOp()) {
+            sender.sendMessage(plugin.getMessages().get(Message.NO_PERMISSION));
+            return;
+        }
+
+        if (args.length < 3) {
+            sender.sendMessage(plugin.getMessages().get(Message.MIGRATE_USAGE, label));
+            return;
+        }
+
+        String from = args[1];
+        String to = args[2];
+        sender.sendMessage(plugin.getMessages().get(Message.MIGRATE_STARTED, from, to));
+
+        dataManager.migrateStorage(from, to).whenComplete((result, error) ->
+            runFor(sender, () -> {
+                if (error == null) {
+                    sender.sendMessage(plugin.getMessages().get(Message.MIGRATE_COMPLETE, to));
+                } else {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    sender.sendMessage(plugin.getMessages().get(Message.MIGRATE_FAILED, cause.getMessage()));
+                    if (!(cause instanceof IllegalArgumentException)) {
+                        plugin.getLogger().severe("Storage migration from " + from + " to " + to + " failed: " + cause);
+                    }
+                }
+            })
+        );
+    }
+
+    /**
+     * Run a task on the thread that owns the sender: the player's region, or the global region for the console
+     */
+    private void runFor(CommandSender sender, Runnable task) {
+        if (sender instanceof Player player) {
+            player.getScheduler().run(plugin, scheduled -> task.run(), null);
+        } else {
+            Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+        }
+    }
 }
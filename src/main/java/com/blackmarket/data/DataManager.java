@@ -1,169 +1,607 @@
 package com.blackmarket.data;
 
 import com.blackmarket.BlackMarket;
-import org.bukkit.configuration.file.YamlConfiguration;
+import com.blackmarket.utils.MetricsRegistry.Metric;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Manages data persistence for the black market
+ * Manages data persistence for the black market.
+ * The live state is kept in memory and persisted through a {@link StorageBackend}.
+ * Mutations only mark the state dirty; a background writer merges them into
+ * a single save on a fixed interval or once enough changes are pending.
+ * Purchases are handed to the backend one at a time instead, and only the
+ * purchases of online players are kept in memory.
+ *
+ * The stored data is loaded on a thread of its own after construction, so the
+ * server does not wait for it. The finished snapshot is handed to the writer,
+ * storage tasks submitted meanwhile run right after it in order, and
+ * {@link #whenReady()} completes once they are done.
+ *
+ * All methods are thread-safe, so region threads on Folia can use them directly.
+ * Reads are lock-free; pool edits take a short lock so the pool map and its
+ * order stay consistent, and purchases are locked per stripe of players.
+ *
+ * With the network backend the in-memory state doubles as a read cache of the
+ * shared database: a background task renews the rotation lease and reloads the
+ * state whenever another server saved, so shop opens never wait on the database.
  */
 public class DataManager {
+    private static final long PURCHASE_TIMEOUT_MILLIS = 2000; // Longest a purchase waits in the storage queue
+
     private final BlackMarket plugin;
-    private final File dataFile;
-    private YamlConfiguration data;
+    private final StorageBackend backend;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BlackMarket-Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Executor storage = this::execute; // The writer, holding tasks back until the data is loaded
+    private final Object loadLock = new Object();
+    private List<Runnable> deferred = new ArrayList<>(); // Storage tasks submitted while loading, null once loaded; guarded by loadLock
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final Set<DataSnapshot.Section> dirtySections = EnumSet.noneOf(DataSnapshot.Section.class); // Guarded by itself
+    private final int maxPendingChanges;
+    private ScheduledTask flushTask;
+    private ScheduledTask evictionTask;
+    private ScheduledTask syncTask;
+    private volatile boolean storageAvailable = true; // False if loading failed, so saves cannot wipe stored data
+    private final CompletableFuture<Void> ready;
 
-    private final Map<UUID, MarketItem> itemPool = new HashMap<>();
-    private final List<UUID> activeItemIds = new ArrayList<>();
-    private final Map<UUID, Set<UUID>> playerPurchases = new HashMap<>(); // Player UUID -> Set of purchased item IDs
-    private long lastRotationTime;
+    private final Object poolLock = new Object(); // Guards pool edits and poolOrder
+    private final Map<UUID, MarketItem> itemPool = new ConcurrentHashMap<>();
+    private final List<UUID> poolOrder = new ArrayList<>(); // Pool ids in the order they were added
+    private volatile List<UUID> activeItemIds = List.of(); // Replaced, never modified
+    private final StripedPurchaseCache purchaseCache;
+    private volatile long lastRotationTime;
+    private volatile StagedRotation stagedRotation; // Selection of the next rotation, null until staged
+    private volatile int poolVersion; // Bumped whenever pool items or weights change
+    private volatile int displayVersion; // Bumped whenever the active items or how they are shown change
+    private volatile boolean rotationLeader; // Always true unless the storage is shared with other servers
+    private volatile String rotationLeaderId;
 
     public DataManager(BlackMarket plugin) {
         this.plugin = plugin;
-        this.dataFile = new File(plugin.getDataFolder(), "data.yml");
-        loadData();
+        this.maxPendingChanges = Math.max(1, plugin.getConfig().getInt("storage.max-pending-changes", 50));
+        this.purchaseCache = new StripedPurchaseCache(
+            Math.max(1, plugin.getConfig().getInt("storage.purchase-cache-size", 1000)),
+            Math.max(0, plugin.getConfig().getLong("storage.purchase-cache-grace-seconds", 300)) * 1000
+        );
+
+        String type = plugin.getConfig().getString("storage.type", "file");
+        StorageBackend configured = createBackend(type);
+        if (configured == null) {
+            plugin.getLogger().warning("Unknown storage type '" + type + "', using file storage");
+            configured = createBackend("file");
+        }
+        this.backend = configured;
+        this.rotationLeader = !(backend instanceof NetworkStorageBackend);
+
+        Executor loader = runnable -> {
+            Thread thread = new Thread(runnable, "BlackMarket-Loader");
+            thread.setDaemon(true);
+            thread.start();
+        };
+        ready = CompletableFuture.supplyAsync(this::loadData, loader).handleAsync(this::finishLoading, writer).exceptionally(error -> {
+            plugin.getLogger().severe("Could not load data, changes will not be saved: " + error);
+            storageAvailable = false;
+            return null;
+        });
+
+        // Neither task touches the world, so they run on the async scheduler
+        long intervalSeconds = Math.max(1, plugin.getConfig().getLong("storage.save-interval-seconds", 30));
+        flushTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, task -> flush(), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        evictionTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin,
+            task -> purchaseCache.evictExpired(System.currentTimeMillis()), 20, 20, TimeUnit.SECONDS);
+        if (backend instanceof NetworkStorageBackend network) {
+            long pollSeconds = Math.max(1, plugin.getConfig().getLong("storage.network.poll-interval-seconds", 5));
+            syncTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin,
+                task -> execute(() -> syncWithNetwork(network)), 1, pollSeconds, TimeUnit.SECONDS);
+        }
+
+        // Players who are already online (e.g. after a reload) never fire a login event; queued after the load
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            loadPurchases(player.getUniqueId());
+        }
     }
 
-    public void loadData() {
-        if (!dataFile.exists()) {
-            plugin.getDataFolder().mkdirs();
-            try {
-                dataFile.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().severe("Could not create data file: " + e.getMessage());
-                return;
+    /**
+     * Create a storage backend by its config name, or null if the name is unknown
+     */
+    private StorageBackend createBackend(String type) {
+        return switch (type.toLowerCase(Locale.ROOT)) {
+            case "file" -> new FileStorageBackend(plugin.getDataFolder(), plugin.getLogger(),
+                Math.max(1, plugin.getConfig().getInt("storage.journal-max-records", 5000)));
+            case "sqlite" -> new SqlStorageBackend(plugin.getDataFolder(), plugin.getLogger());
+            case "network" -> {
+                String serverId = plugin.getConfig().getString("storage.network.server-id", "");
+                yield new NetworkStorageBackend(plugin.getLogger(),
+                    plugin.getConfig().getString("storage.network.jdbc-url", ""),
+                    plugin.getConfig().getString("storage.network.username", ""),
+                    plugin.getConfig().getString("storage.network.password", ""),
+                    serverId.isBlank() ? UUID.randomUUID().toString() : serverId,
+                    Math.max(5, plugin.getConfig().getLong("storage.network.lease-seconds", 30)) * 1000);
             }
-        }
+            default -> null;
+        };
+    }
 
-        data = YamlConfiguration.loadConfiguration(dataFile);
+    /**
+     * Read the stored data. Runs on the loader thread; nothing else uses the backend until it is done.
+     */
+    private DataSnapshot loadData() {
+        long start = System.nanoTime();
+        try {
+            DataSnapshot snapshot = backend.load();
+            plugin.getMetrics().record(Metric.LOAD_DATA, start);
+            return snapshot;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // Load item pool
-        if (data.contains("item-pool")) {
-            for (String key : data.getConfigurationSection("item-pool").getKeys(false)) {
-                String path = "item-pool." + key;
+    /**
+     * Take over the loaded data, then run the storage tasks that waited for it. Runs on the writer thread.
+     * Player purchases are loaded per player when they log in.
+     */
+    private Void finishLoading(DataSnapshot snapshot, Throwable error) {
+        try {
+            if (error == null) {
+                applySnapshot(snapshot);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                plugin.getLogger().severe("Could not load data from " + backend.getName() + " storage, changes will not be saved: " + cause.getMessage());
+                storageAvailable = false;
+                lastRotationTime = System.currentTimeMillis();
+            }
+        } catch (RuntimeException e) {
+            storageAvailable = false;
+            throw e;
+        } finally {
+            List<Runnable> tasks;
+            synchronized (loadLock) {
+                tasks = deferred;
+                deferred = null;
+            }
+            for (Runnable task : tasks) {
                 try {
-                    UUID id = UUID.fromString(key);
-                    byte[] itemBytes = data.getString(path + ".item").getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);
-                    ItemStack itemStack = ItemStack.deserializeBytes(itemBytes);
-                    
-                    List<ItemStack> costItems = new ArrayList<>();
-                    if (data.contains(path + ".costs")) {
-                        List<String> costStrings = data.getStringList(path + ".costs");
-                        for (String costStr : costStrings) {
-                            byte[] costBytes = costStr.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);
-                            costItems.add(ItemStack.deserializeBytes(costBytes));
-                        }
-                    }
-                    
-                    int weight = data.getInt(path + ".weight", 1);
-                    
-                    MarketItem marketItem = new MarketItem(id, itemStack, costItems, weight);
-                    itemPool.put(id, marketItem);
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Could not load market item " + key + ": " + e.getMessage());
+                    task.run();
+                } catch (RuntimeException e) {
+                    plugin.getLogger().severe("Storage task failed after loading: " + e);
                 }
             }
         }
+        return null;
+    }
 
-        // Load active items
-        if (data.contains("active-items")) {
-            List<String> activeIds = data.getStringList("active-items");
-            for (String idStr : activeIds) {
-                try {
-                    activeItemIds.add(UUID.fromString(idStr));
-                } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid UUID in active items: " + idStr);
-                }
+    /**
+     * Run a task on the writer thread, or hold it back until the data is loaded
+     */
+    private void execute(Runnable task) {
+        synchronized (loadLock) {
+            if (deferred != null) {
+                deferred.add(task);
+                return;
             }
         }
+        writer.execute(task);
+    }
 
-        // Load player purchases
-        if (data.contains("purchases")) {
-            for (String playerUuidStr : data.getConfigurationSection("purchases").getKeys(false)) {
-                try {
-                    UUID playerUuid = UUID.fromString(playerUuidStr);
-                    List<String> purchasedIds = data.getStringList("purchases." + playerUuidStr);
-                    Set<UUID> purchasedSet = new HashSet<>();
-                    
-                    for (String itemIdStr : purchasedIds) {
-                        try {
-                            purchasedSet.add(UUID.fromString(itemIdStr));
-                        } catch (IllegalArgumentException e) {
-                            plugin.getLogger().warning("Invalid item UUID in purchases: " + itemIdStr);
-                        }
-                    }
-                    
-                    playerPurchases.put(playerUuid, purchasedSet);
-                } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid player UUID in purchases: " + playerUuidStr);
+    /**
+     * Completes once the stored data is in memory, even if it could not be loaded
+     */
+    public CompletableFuture<Void> whenReady() {
+        return ready;
+    }
+
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * Replace the in-memory pool with a loaded snapshot. The rotation is only taken
+     * over if it is newer than the one in memory.
+     */
+    private void applySnapshot(DataSnapshot snapshot) {
+        synchronized (poolLock) {
+            // Load item pool
+            Set<UUID> ids = new LinkedHashSet<>();
+            for (MarketItem item : snapshot.pool()) {
+                if (ids.add(item.getId())) {
+                    itemPool.put(item.getId(), item);
                 }
             }
+            itemPool.keySet().retainAll(ids);
+            poolOrder.clear();
+            poolOrder.addAll(ids);
+            poolVersion++;
+            displayVersion++;
+
+            if (snapshot.lastRotationTime() < lastRotationTime) {
+                return;
+            }
+            stagedRotation = snapshot.stagedRotation();
+            if (snapshot.lastRotationTime() == lastRotationTime) {
+                return;
+            }
+
+            // Load active items and last rotation time
+            activeItemIds = List.copyOf(snapshot.activeItemIds());
+            if (lastRotationTime == 0) {
+                // First load: purchases loading meanwhile already belong to this rotation
+                purchaseCache.setActiveItems(activeItemIds);
+            } else {
+                // Another server rotated; purchases made here so far belong to the old rotation
+                purchaseCache.rotate(activeItemIds);
+            }
+            lastRotationTime = snapshot.lastRotationTime();
+        }
+    }
+
+    /**
+     * Renew the rotation lease and pick up changes other servers saved. Runs on the writer thread.
+     */
+    private void syncWithNetwork(NetworkStorageBackend network) {
+        if (!storageAvailable) {
+            return;
         }
 
-        // Load last rotation time
-        lastRotationTime = data.getLong("last-rotation", System.currentTimeMillis());
+        try {
+            boolean wasLeader = rotationLeader;
+            rotationLeader = network.renewLease(System.currentTimeMillis());
+            rotationLeaderId = network.getLeaseOwner();
+            if (rotationLeader && !wasLeader) {
+                // Take over a rotation the previous leader left overdue without waiting out the idle timer
+                plugin.getRotationManager().wake();
+            }
+
+            // Unsaved local edits are written first; the next poll then reloads the result
+            if (pendingChanges.get() > 0 || !network.hasRemoteChanges()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            DataSnapshot snapshot = network.load();
+            plugin.getMetrics().record(Metric.LOAD_DATA, start);
+            applySnapshot(snapshot);
+        } catch (IOException e) {
+            rotationLeader = false;
+            plugin.getLogger().warning("Could not sync with the network storage: " + e.getMessage());
+        }
     }
 
+    /**
+     * Mark sections of the data as changed. The change is written by the background
+     * writer on the next flush, or right away once too many changes are pending.
+     */
+    private void markDirty(DataSnapshot.Section... sections) {
+        synchronized (dirtySections) {
+            Collections.addAll(dirtySections, sections);
+        }
+        if (pendingChanges.incrementAndGet() >= maxPendingChanges) {
+            flush();
+        }
+    }
+
+    /**
+     * The sections changed since the last snapshot was taken, clearing them
+     */
+    private Set<DataSnapshot.Section> takeDirtySections() {
+        synchronized (dirtySections) {
+            Set<DataSnapshot.Section> sections = EnumSet.copyOf(dirtySections);
+            dirtySections.clear();
+            return sections;
+        }
+    }
+
+    /**
+     * Hand any pending changes to the background writer without waiting for it
+     */
+    public void flush() {
+        if (pendingChanges.getAndSet(0) == 0) {
+            return;
+        }
+
+        DataSnapshot snapshot = createSnapshot(takeDirtySections());
+        execute(() -> writeSnapshot(snapshot));
+    }
+
+    /**
+     * Save all data and block until it has been written
+     */
     public void saveData() {
-        data = new YamlConfiguration();
+        // Nothing was loaded to save yet; saving now would overwrite the stored data
+        if (!isReady()) {
+            return;
+        }
+
+        pendingChanges.set(0);
+        DataSnapshot snapshot = createSnapshot(takeDirtySections());
+
+        try {
+            CompletableFuture.runAsync(() -> writeSnapshot(snapshot), storage).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().severe("Could not save data: " + e.getCause().getMessage());
+        }
+    }
 
-        // Save item pool
-        for (Map.Entry<UUID, MarketItem> entry : itemPool.entrySet()) {
-            String path = "item-pool." + entry.getKey().toString();
-            MarketItem item = entry.getValue();
-            
-            data.set(path + ".item", new String(item.getItemStack().serializeAsBytes(), java.nio.charset.StandardCharsets.ISO_8859_1));
-            
-            List<String> costStrings = new ArrayList<>();
-            for (ItemStack cost : item.getCostItems()) {
-                costStrings.add(new String(cost.serializeAsBytes(), java.nio.charset.StandardCharsets.ISO_8859_1));
+    /**
+     * Stop the background writer after a final blocking save
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (evictionTask != null) {
+            evictionTask.cancel();
+            evictionTask = null;
+        }
+        if (syncTask != null) {
+            syncTask.cancel();
+            syncTask = null;
+        }
+
+        // The backend must not be closed while it is still loading
+        try {
+            ready.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getLogger().warning("Data was still loading on shutdown: " + e);
+        }
+
+        saveData();
+        writer.shutdown();
+
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for the data writer to finish");
             }
-            data.set(path + ".costs", costStrings);
-            data.set(path + ".weight", item.getWeight());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
-        // Save active items
-        List<String> activeIdStrings = new ArrayList<>();
-        for (UUID id : activeItemIds) {
-            activeIdStrings.add(id.toString());
+        try {
+            backend.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not close " + backend.getName() + " storage: " + e.getMessage());
         }
-        data.set("active-items", activeIdStrings);
+    }
 
-        // Save player purchases
-        for (Map.Entry<UUID, Set<UUID>> entry : playerPurchases.entrySet()) {
-            List<String> purchasedIds = new ArrayList<>();
-            for (UUID itemId : entry.getValue()) {
-                purchasedIds.add(itemId.toString());
+    /**
+     * Copy the current state so it can be serialized off the main thread.
+     * Market items are immutable, so they are shared as they are. Take the changed
+     * sections before calling this, so an edit in between is saved again rather than lost.
+     */
+    private DataSnapshot createSnapshot(Set<DataSnapshot.Section> changed) {
+        List<MarketItem> pool;
+        synchronized (poolLock) {
+            pool = new ArrayList<>(poolOrder.size());
+            for (UUID id : poolOrder) {
+                pool.add(itemPool.get(id));
             }
-            data.set("purchases." + entry.getKey().toString(), purchasedIds);
         }
 
-        // Save last rotation time
-        data.set("last-rotation", lastRotationTime);
+        return new DataSnapshot(pool, activeItemIds, lastRotationTime, stagedRotation, changed);
+    }
 
+    /**
+     * Persist a snapshot. Runs on the writer thread.
+     */
+    private void writeSnapshot(DataSnapshot snapshot) {
+        if (!storageAvailable) {
+            return;
+        }
+
+        long start = System.nanoTime();
         try {
-            data.save(dataFile);
+            backend.save(snapshot);
+            plugin.getMetrics().record(Metric.SAVE_DATA, start);
         } catch (IOException e) {
-            plugin.getLogger().severe("Could not save data file: " + e.getMessage());
+            plugin.getLogger().severe("Could not save data: " + e.getMessage());
+            // Keep the state dirty so the next flush retries
+            synchronized (dirtySections) {
+                dirtySections.addAll(snapshot.changed());
+            }
+            pendingChanges.incrementAndGet();
+        }
+    }
+
+    /**
+     * Run a backend operation on the writer thread
+     */
+    private void write(String action, StorageTask task) {
+        execute(() -> {
+            if (!storageAvailable) {
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not " + action + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Copy everything stored in one backend into another on the writer thread.
+     * Copying from the active backend uses the live state; copying into it is not allowed
+     * because the live state would overwrite the imported data.
+     */
+    public CompletableFuture<Void> migrateStorage(String from, String to) {
+        if (from.equalsIgnoreCase(to)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Source and target storage are the same"));
+        }
+        if (to.equalsIgnoreCase(backend.getName())) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot migrate into the storage currently in use"));
+        }
+
+        boolean fromActive = from.equalsIgnoreCase(backend.getName());
+        StorageBackend source = fromActive ? backend : createBackend(from);
+        StorageBackend target = createBackend(to);
+        if (source == null || target == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown storage type, use file, sqlite or network"));
+        }
+
+        DataSnapshot liveSnapshot = fromActive ? createSnapshot(EnumSet.allOf(DataSnapshot.Section.class)) : null;
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                // Purchases of offline players are only in storage; the writer runs in order, so it is up to date
+                DataSnapshot snapshot = fromActive ? liveSnapshot : source.load();
+                Map<UUID, Set<UUID>> purchases = new HashMap<>();
+                source.loadAllPurchases((playerUuid, itemId) -> purchases.computeIfAbsent(playerUuid, k -> new HashSet<>()).add(itemId));
+
+                target.load();
+                target.importData(snapshot, purchases);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                closeQuietly(target);
+                if (!fromActive) {
+                    closeQuietly(source);
+                }
+            }
+        }, storage);
+    }
+
+    private void closeQuietly(StorageBackend storage) {
+        try {
+            storage.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not close " + storage.getName() + " storage: " + e.getMessage());
         }
     }
 
     public void addItemToPool(MarketItem item) {
-        itemPool.put(item.getId(), item);
-        saveData();
+        boolean first;
+        synchronized (poolLock) {
+            first = itemPool.isEmpty();
+            if (itemPool.put(item.getId(), item) == null) {
+                poolOrder.add(item.getId());
+            }
+            poolVersion++;
+        }
+        markDirty(DataSnapshot.Section.POOL);
+        if (first) {
+            // An empty pool leaves the rotation timer idle; the first item can go on sale right away
+            plugin.getRotationManager().wake();
+        }
     }
 
     public void removeItemFromPool(UUID id) {
-        itemPool.remove(id);
-        activeItemIds.remove(id);
-        saveData();
+        // Stays in activeItemIds so the purchase bits of later slots keep their position;
+        // getActiveItems skips ids that are no longer in the pool
+        synchronized (poolLock) {
+            if (itemPool.remove(id) != null) {
+                poolOrder.remove(id);
+            }
+            poolVersion++;
+            displayVersion++;
+        }
+        markDirty(DataSnapshot.Section.POOL);
     }
 
-    public Map<UUID, MarketItem> getItemPool() {
-        return new HashMap<>(itemPool);
+    public void setItemWeight(UUID id, int weight) {
+        synchronized (poolLock) {
+            MarketItem item = itemPool.get(id);
+            if (item == null) {
+                return;
+            }
+            itemPool.put(id, item.withWeight(weight));
+            poolVersion++;
+            // The shop render only holds the items currently on sale
+            if (activeItemIds.contains(id)) {
+                displayVersion++;
+            }
+        }
+        markDirty(DataSnapshot.Section.POOL);
+    }
+
+    public void setItemCosts(UUID id, List<ItemStack> costItems) {
+        synchronized (poolLock) {
+            MarketItem item = itemPool.get(id);
+            if (item == null) {
+                return;
+            }
+            itemPool.put(id, item.withCostItems(costItems));
+            if (activeItemIds.contains(id)) {
+                displayVersion++;
+            }
+        }
+        markDirty(DataSnapshot.Section.POOL);
+    }
+
+    /**
+     * Changes whenever items are added, removed or reweighted
+     */
+    public int getPoolVersion() {
+        return poolVersion;
+    }
+
+    /**
+     * Changes whenever the active items, their costs or their weights change
+     */
+    public int getDisplayVersion() {
+        return displayVersion;
+    }
+
+    /**
+     * All pool items, without copying; the view reflects later edits
+     */
+    public Collection<MarketItem> getPoolItems() {
+        return Collections.unmodifiableCollection(itemPool.values());
+    }
+
+    public int getPoolSize() {
+        synchronized (poolLock) {
+            return poolOrder.size();
+        }
+    }
+
+    /**
+     * Pool items in the order they were added, starting at the given position
+     */
+    public List<MarketItem> getPoolPage(int offset, int count) {
+        synchronized (poolLock) {
+            int end = Math.min(poolOrder.size(), offset + count);
+            List<MarketItem> page = new ArrayList<>(Math.max(0, end - offset));
+            for (int i = offset; i < end; i++) {
+                page.add(itemPool.get(poolOrder.get(i)));
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Position of an item in the pool order, or -1 if it is not in the pool
+     */
+    public int getPoolIndex(UUID id) {
+        synchronized (poolLock) {
+            return poolOrder.indexOf(id);
+        }
     }
 
     public List<MarketItem> getActiveItems() {
@@ -177,37 +615,231 @@ public class DataManager {
         return activeItems;
     }
 
-    public void setActiveItems(List<UUID> itemIds) {
-        activeItemIds.clear();
-        activeItemIds.addAll(itemIds);
-        saveData();
+    /**
+     * Switch to a new rotation and persist it right away with a single write.
+     * The active items, rotation time and staged rotation change together, so
+     * no reader sees the new items with the old rotation time.
+     */
+    public void applyRotation(List<UUID> itemIds, long rotationTime) {
+        synchronized (poolLock) {
+            activeItemIds = List.copyOf(itemIds);
+            lastRotationTime = rotationTime;
+            stagedRotation = null;
+            purchaseCache.rotate(activeItemIds);
+            displayVersion++;
+        }
+
+        // The cleared purchases are dropped with the snapshot flushed here
+        write("clear purchases", backend::clearPurchases);
+        markDirty(DataSnapshot.Section.ACTIVE_ITEMS, DataSnapshot.Section.ROTATION_TIME);
+        flush();
     }
 
+    /**
+     * Items selected ahead of time for the next rotation, or null if none are staged
+     */
+    public StagedRotation getStagedRotation() {
+        return stagedRotation;
+    }
+
+    public void setStagedRotation(StagedRotation stagedRotation) {
+        this.stagedRotation = stagedRotation;
+        markDirty(DataSnapshot.Section.ACTIVE_ITEMS);
+    }
+
+    /**
+     * Whether the player bought the item this rotation. Never waits for storage: while the
+     * player's purchases are still loading this is false, see {@link #whenPurchasesLoaded}.
+     */
     public boolean hasPlayerPurchased(UUID playerUuid, UUID itemId) {
-        Set<UUID> purchases = playerPurchases.get(playerUuid);
-        return purchases != null && purchases.contains(itemId);
+        return purchaseCache.contains(playerUuid, itemId);
     }
 
-    public void recordPurchase(UUID playerUuid, UUID itemId) {
-        playerPurchases.computeIfAbsent(playerUuid, k -> new HashSet<>()).add(itemId);
-        saveData();
+    /**
+     * Record a purchase before the player pays for it. Only a recorded purchase may be handed out.
+     * Local storage decides right away and returns a completed future. With shared storage the
+     * database decides, since the player may be buying the same item on another server, so the
+     * future completes on the writer thread; nothing waits for it.
+     */
+    public CompletableFuture<PurchaseResult> recordPurchase(UUID playerUuid, UUID itemId) {
+        if (!purchaseCache.isLoaded(playerUuid)) {
+            // Refuse this click rather than wait; the load makes the next one work
+            whenPurchasesLoaded(playerUuid);
+            return CompletableFuture.completedFuture(PurchaseResult.UNAVAILABLE);
+        }
+        if (!purchaseCache.add(playerUuid, itemId)) {
+            return CompletableFuture.completedFuture(PurchaseResult.ALREADY_PURCHASED);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        if (!isNetworked()) {
+            write("record purchase", () -> backend.recordPurchase(playerUuid, itemId, timestamp));
+            return CompletableFuture.completedFuture(PurchaseResult.RECORDED);
+        }
+
+        return storePurchase(playerUuid, itemId, timestamp);
     }
 
-    public void clearPurchaseHistory() {
-        playerPurchases.clear();
-        saveData();
+    /**
+     * Insert a purchase into shared storage. An insert still queued behind other storage work
+     * when the timeout passes is called off and the purchase taken back; once started, its outcome is awaited.
+     */
+    private CompletableFuture<PurchaseResult> storePurchase(UUID playerUuid, UUID itemId, long timestamp) {
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<PurchaseResult> result = new CompletableFuture<>();
+        execute(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            if (!storageAvailable) {
+                purchaseCache.removePurchase(playerUuid, itemId);
+                result.complete(PurchaseResult.UNAVAILABLE);
+                return;
+            }
+            try {
+                result.complete(backend.recordPurchase(playerUuid, itemId, timestamp)
+                    ? PurchaseResult.RECORDED : PurchaseResult.ALREADY_PURCHASED);
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().severe("Could not record purchase: " + e.getMessage());
+                purchaseCache.removePurchase(playerUuid, itemId);
+                result.complete(PurchaseResult.UNAVAILABLE);
+            }
+        });
+
+        Bukkit.getAsyncScheduler().runDelayed(plugin, task -> {
+            if (started.compareAndSet(false, true)) {
+                purchaseCache.removePurchase(playerUuid, itemId);
+                result.complete(PurchaseResult.UNAVAILABLE);
+            }
+        }, PURCHASE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return result;
     }
 
-    public long getLastRotationTime() {
-        return lastRotationTime;
+    /**
+     * Take back a purchase recorded in shared storage that could not be paid for after all,
+     * e.g. because the player moved the cost items away while the insert was pending.
+     * Local storage records purchases synchronously, so they are paid for right away.
+     */
+    public void cancelPurchase(UUID playerUuid, UUID itemId) {
+        if (!(backend instanceof NetworkStorageBackend network)) {
+            return;
+        }
+        purchaseCache.removePurchase(playerUuid, itemId);
+        write("cancel purchase", () -> network.removePurchase(playerUuid, itemId));
     }
 
-    public void setLastRotationTime(long time) {
-        this.lastRotationTime = time;
-        saveData();
+    /**
+     * Outcome of {@link #recordPurchase}
+     */
+    public enum PurchaseResult {
+        RECORDED,
+        ALREADY_PURCHASED,
+        UNAVAILABLE // The player's purchases could not be loaded in time
+    }
+
+    /**
+     * Load a player's purchases before they join. Blocks the calling thread,
+     * so only call it off the main thread, e.g. from AsyncPlayerPreLoginEvent.
+     * The entry expires unless the player joins and it is retained.
+     */
+    public void preloadPurchases(UUID playerUuid) {
+        purchaseCache.release(playerUuid, System.currentTimeMillis());
+        // With shared storage the player may have bought something on another server since
+        if (purchaseCache.isLoaded(playerUuid) && !isNetworked()) {
+            return;
+        }
+
+        try {
+            loadPurchases(playerUuid).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getLogger().warning("Could not preload purchases of " + playerUuid + ": " + e);
+        }
+    }
+
+    /**
+     * Keep a player's purchases in memory while they are online
+     */
+    public void retainPurchases(UUID playerUuid) {
+        purchaseCache.retain(playerUuid);
+    }
+
+    /**
+     * Let a player's purchases be evicted once the grace period has passed
+     */
+    public void releasePurchases(UUID playerUuid) {
+        purchaseCache.release(playerUuid, System.currentTimeMillis());
+    }
+
+    /**
+     * Load a player's purchases on the writer thread, after any of their purchases still queued there
+     */
+    private CompletableFuture<Void> loadPurchases(UUID playerUuid) {
+        int epoch = purchaseCache.epoch();
+        if (!storageAvailable) {
+            purchaseCache.put(playerUuid, Set.of(), epoch);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return backend.loadPurchases(playerUuid);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, storage).thenAccept(purchases -> purchaseCache.put(playerUuid, purchases, epoch));
+    }
+
+    /**
+     * Completes once the player's purchases are in memory. Purchases are normally loaded on
+     * login, so this is usually already complete; otherwise, e.g. when the player's entry was
+     * evicted while they were online or failed to load, the load is started here.
+     */
+    public CompletableFuture<Void> whenPurchasesLoaded(UUID playerUuid) {
+        if (purchaseCache.isLoaded(playerUuid)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return loadPurchases(playerUuid).whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                plugin.getLogger().severe("Could not load purchases of " + playerUuid + ": " + cause.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Whether the storage is shared with other servers
+     */
+    public boolean isNetworked() {
+        return backend instanceof NetworkStorageBackend;
+    }
+
+    /**
+     * Whether this server performs rotations. Only one server of a network does.
+     */
+    public boolean isRotationLeader() {
+        return rotationLeader;
+    }
+
+    /**
+     * Server id of the network's rotation leader, or null if unknown
+     */
+    public String getRotationLeaderId() {
+        return rotationLeaderId;
+    }
+
+    public long getLastRotationTime() {
+        return lastRotationTime;
     }
 
     public MarketItem getMarketItem(UUID id) {
         return itemPool.get(id);
     }
+
+    @FunctionalInterface
+    private interface StorageTask {
+        void run() throws IOException;
+    }
 }
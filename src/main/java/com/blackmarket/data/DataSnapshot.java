@@ -0,0 +1,36 @@
+package com.blackmarket.data;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Point-in-time copy of the item pool and rotation state, handed to the writer thread.
+ * Purchases are persisted separately through {@link StorageBackend#recordPurchase}.
+ * The staged rotation is null unless the next rotation was already selected.
+ * Market items are immutable, so the pool shares them with the live state.
+ *
+ * The changed sections tell a backend what differs from its last save, so it can
+ * keep the rest as stored. Backends that cannot reuse a section write it anyway.
+ */
+record DataSnapshot(List<MarketItem> pool, List<UUID> activeItemIds, long lastRotationTime, StagedRotation stagedRotation,
+                    Set<Section> changed) {
+
+    DataSnapshot(List<MarketItem> pool, List<UUID> activeItemIds, long lastRotationTime, StagedRotation stagedRotation) {
+        this(pool, activeItemIds, lastRotationTime, stagedRotation, EnumSet.allOf(Section.class));
+    }
+
+    DataSnapshot(List<MarketItem> pool, List<UUID> activeItemIds, long lastRotationTime) {
+        this(pool, activeItemIds, lastRotationTime, null);
+    }
+
+    /**
+     * Parts of the state that are saved independently
+     */
+    enum Section {
+        POOL,          // Pool items, their costs and weights
+        ACTIVE_ITEMS,  // Active items and the staged rotation
+        ROTATION_TIME
+    }
+}
@@ -0,0 +1,362 @@
+package com.blackmarket.data;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Stores the black market in a binary snapshot (data.bin) plus an append-only
+ * purchase journal. The journal is folded back into the snapshot whenever the
+ * pool is saved and once it grows past the configured number of records.
+ */
+class FileStorageBackend implements StorageBackend {
+    private final Logger logger;
+    private final Path dataFile;
+    private final Path legacyDataFile;
+    private final Path journalFile;
+    private final PurchaseJournal journal;
+    private final int journalMaxRecords;
+
+    private SnapshotFile.Reader snapshot; // Current data.bin, null until it has been written once
+    private long lastRotationTime;
+    private int journalRecords; // Records not yet folded into the snapshot
+    private boolean purchasesCleared; // Purchases in the snapshot are stale until it is rewritten
+    private int clearedRecords; // Leading journal records that are stale for the same reason
+
+    FileStorageBackend(File dataFolder, Logger logger, int journalMaxRecords) {
+        this.logger = logger;
+        this.dataFile = new File(dataFolder, "data.bin").toPath();
+        this.legacyDataFile = new File(dataFolder, "data.yml").toPath();
+        this.journalFile = new File(dataFolder, "purchases.journal").toPath();
+        this.journal = new PurchaseJournal(journalFile);
+        this.journalMaxRecords = journalMaxRecords;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public DataSnapshot load() throws IOException {
+        Files.createDirectories(dataFile.getParent());
+
+        DataSnapshot loaded = null;
+        Map<UUID, Set<UUID>> legacyPurchases = null;
+        if (Files.exists(dataFile)) {
+            try {
+                snapshot = SnapshotFile.Reader.open(dataFile);
+                loaded = readSnapshot(snapshot);
+            } catch (IOException e) {
+                // Keep the unreadable file so it is not overwritten by the next save
+                logger.severe("Could not load data file, moving it to data.bin.broken: " + e.getMessage());
+                closeSnapshot();
+                Files.move(dataFile, dataFile.resolveSibling("data.bin.broken"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else if (Files.exists(legacyDataFile)) {
+            legacyPurchases = new HashMap<>();
+            loaded = loadLegacyData(legacyPurchases);
+        }
+
+        if (loaded == null) {
+            loaded = new DataSnapshot(List.of(), List.of(), System.currentTimeMillis());
+        }
+        lastRotationTime = loaded.lastRotationTime();
+
+        openJournal();
+
+        if (legacyPurchases != null) {
+            migrateLegacyData(loaded, legacyPurchases);
+        }
+        return loaded;
+    }
+
+    private DataSnapshot readSnapshot(SnapshotFile.Reader reader) {
+        // The reader only uses absolute positions, so records can be decoded concurrently
+        List<MarketItem> pool = ParallelDecoder.decode(reader.poolSize(), i -> {
+            try {
+                return reader.readPoolItem(i);
+            } catch (Exception e) {
+                logger.warning("Could not load market item " + reader.poolId(i) + ": " + e.getMessage());
+                return null;
+            }
+        });
+
+        return new DataSnapshot(pool, reader.readActiveItems(), reader.lastRotationTime(), reader.readStagedRotation());
+    }
+
+    private void openJournal() throws IOException {
+        try {
+            journalRecords = journal.open();
+        } catch (IOException e) {
+            logger.severe("Could not read purchase journal, starting a new one: " + e.getMessage());
+            Files.move(journalFile, journalFile.resolveSibling("purchases.journal.broken"), StandardCopyOption.REPLACE_EXISTING);
+            journalRecords = journal.open();
+        }
+    }
+
+    @Override
+    public Set<UUID> loadPurchases(UUID playerUuid) throws IOException {
+        Set<UUID> purchases = new HashSet<>();
+        if (snapshot != null && !purchasesCleared) {
+            snapshot.readPurchases(playerUuid, purchases::add);
+        }
+
+        // The journal is bounded by journal-max-records, so scanning it stays cheap
+        journal.replay(clearedRecords, lastRotationTime, (player, itemId) -> {
+            if (player.equals(playerUuid)) {
+                purchases.add(itemId);
+            }
+        });
+        return purchases;
+    }
+
+    @Override
+    public void loadAllPurchases(BiConsumer<UUID, UUID> consumer) throws IOException {
+        if (snapshot != null && !purchasesCleared) {
+            snapshot.readPurchases(consumer);
+        }
+        journal.replay(clearedRecords, lastRotationTime, consumer);
+    }
+
+    /**
+     * Write the snapshot, copying the pool records from the current data.bin if the pool
+     * is unchanged, and its purchases too if none were made or cleared since
+     */
+    @Override
+    public void save(DataSnapshot data) throws IOException {
+        SnapshotFile.Reader source = snapshot;
+        boolean purchasesChanged = source == null || purchasesCleared || journalRecords > 0 || !source.canCopyPurchases();
+        if (source != null && data.changed().isEmpty() && !purchasesChanged) {
+            return;
+        }
+
+        boolean poolChanged = source == null || data.changed().contains(DataSnapshot.Section.POOL);
+        Map<UUID, Set<UUID>> purchases = poolChanged || purchasesChanged ? collectPurchases(data.lastRotationTime()) : null;
+        if (poolChanged) {
+            writeAtomically(temp -> SnapshotFile.write(temp, data, purchases));
+        } else {
+            writeAtomically(temp -> SnapshotFile.rewriteRotation(temp, source, data, purchases));
+        }
+        lastRotationTime = data.lastRotationTime();
+        afterWrite();
+    }
+
+    @Override
+    public boolean recordPurchase(UUID playerUuid, UUID itemId, long timestamp) throws IOException {
+        // Only this server writes the journal, and the cache already rejected repeat purchases
+        journal.append(playerUuid, itemId, timestamp);
+        if (++journalRecords >= journalMaxRecords) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Only marks the stored purchases as stale. They are dropped once the next snapshot
+     * is on disk, so a crash before then still finds the old rotation with its purchases.
+     */
+    @Override
+    public void clearPurchases() {
+        purchasesCleared = true;
+        clearedRecords = journalRecords;
+    }
+
+    @Override
+    public void importData(DataSnapshot data, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException {
+        writeAtomically(temp -> SnapshotFile.write(temp, data, purchases));
+        lastRotationTime = data.lastRotationTime();
+        afterWrite();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSnapshot();
+        journal.close();
+    }
+
+    /**
+     * Fold the journal into the snapshot without touching the pool records
+     */
+    private void compact() throws IOException {
+        if (snapshot == null) {
+            // Nothing to fold into yet; the next save writes the snapshot
+            return;
+        }
+
+        Map<UUID, Set<UUID>> purchases = collectPurchases(lastRotationTime);
+        SnapshotFile.Reader source = snapshot;
+        writeAtomically(temp -> SnapshotFile.rewritePurchases(temp, source, purchases));
+        afterWrite();
+    }
+
+    /**
+     * Merge the purchases in the snapshot with those in the journal
+     */
+    private Map<UUID, Set<UUID>> collectPurchases(long since) throws IOException {
+        Map<UUID, Set<UUID>> purchases = new HashMap<>();
+        BiConsumer<UUID, UUID> collector =
+            (playerUuid, itemId) -> purchases.computeIfAbsent(playerUuid, k -> new HashSet<>()).add(itemId);
+
+        if (snapshot != null && !purchasesCleared && snapshot.lastRotationTime() >= since) {
+            snapshot.readPurchases(collector);
+        }
+        journal.replay(clearedRecords, since, collector);
+        return purchases;
+    }
+
+    /**
+     * Write to a temp file first so a crash mid-write never leaves a truncated data file.
+     * The temp file is forced to disk before it replaces data.bin, since the journal is reset afterwards.
+     */
+    private void writeAtomically(SnapshotWriter writer) throws IOException {
+        Path temp = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+        writer.write(temp);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        // The writer was the last user of the old mapping, which would block the move on Windows
+        closeSnapshot();
+        try {
+            try {
+                Files.move(temp, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, dataFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // The old file is still in place, keep reading from it
+            if (Files.exists(dataFile)) {
+                snapshot = SnapshotFile.Reader.open(dataFile);
+            }
+            throw e;
+        }
+    }
+
+    private void closeSnapshot() {
+        if (snapshot != null) {
+            snapshot.close();
+            snapshot = null;
+        }
+    }
+
+    /**
+     * The new snapshot contains every journaled purchase, so the journal can start over
+     */
+    private void afterWrite() throws IOException {
+        snapshot = SnapshotFile.Reader.open(dataFile);
+        purchasesCleared = false;
+        journal.reset();
+        journalRecords = 0;
+        clearedRecords = 0;
+    }
+
+    /**
+     * Load the YAML data file used before the binary snapshot format
+     */
+    private DataSnapshot loadLegacyData(Map<UUID, Set<UUID>> purchases) {
+        YamlConfiguration data = YamlConfiguration.loadConfiguration(legacyDataFile.toFile());
+
+        // Load item pool
+        List<MarketItem> pool = new ArrayList<>();
+        if (data.contains("item-pool")) {
+            for (String key : data.getConfigurationSection("item-pool").getKeys(false)) {
+                String path = "item-pool." + key;
+                try {
+                    UUID id = UUID.fromString(key);
+                    byte[] itemBytes = data.getString(path + ".item").getBytes(StandardCharsets.ISO_8859_1);
+                    ItemStack itemStack = ItemStack.deserializeBytes(itemBytes);
+
+                    List<ItemStack> costItems = new ArrayList<>();
+                    if (data.contains(path + ".costs")) {
+                        List<String> costStrings = data.getStringList(path + ".costs");
+                        for (String costStr : costStrings) {
+                            byte[] costBytes = costStr.getBytes(StandardCharsets.ISO_8859_1);
+                            costItems.add(ItemStack.deserializeBytes(costBytes));
+                        }
+                    }
+
+                    int weight = data.getInt(path + ".weight", 1);
+
+                    pool.add(MarketItem.stored(id, itemStack, costItems, weight));
+                } catch (Exception e) {
+                    logger.warning("Could not load market item " + key + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // Load active items
+        List<UUID> activeItemIds = new ArrayList<>();
+        if (data.contains("active-items")) {
+            List<String> activeIds = data.getStringList("active-items");
+            for (String idStr : activeIds) {
+                try {
+                    activeItemIds.add(UUID.fromString(idStr));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Invalid UUID in active items: " + idStr);
+                }
+            }
+        }
+
+        // Load player purchases
+        if (data.contains("purchases")) {
+            for (String playerUuidStr : data.getConfigurationSection("purchases").getKeys(false)) {
+                try {
+                    UUID playerUuid = UUID.fromString(playerUuidStr);
+                    List<String> purchasedIds = data.getStringList("purchases." + playerUuidStr);
+                    Set<UUID> purchasedSet = new HashSet<>();
+
+                    for (String itemIdStr : purchasedIds) {
+                        try {
+                            purchasedSet.add(UUID.fromString(itemIdStr));
+                        } catch (IllegalArgumentException e) {
+                            logger.warning("Invalid item UUID in purchases: " + itemIdStr);
+                        }
+                    }
+
+                    purchases.put(playerUuid, purchasedSet);
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Invalid player UUID in purchases: " + playerUuidStr);
+                }
+            }
+        }
+
+        // Load last rotation time
+        long lastRotationTime = data.getLong("last-rotation", System.currentTimeMillis());
+
+        return new DataSnapshot(pool, activeItemIds, lastRotationTime);
+    }
+
+    /**
+     * Write the legacy data as a binary snapshot once and keep the old file as a backup
+     */
+    private void migrateLegacyData(DataSnapshot data, Map<UUID, Set<UUID>> purchases) throws IOException {
+        journal.replay(data.lastRotationTime(),
+            (playerUuid, itemId) -> purchases.computeIfAbsent(playerUuid, k -> new HashSet<>()).add(itemId));
+        importData(data, purchases);
+
+        try {
+            Files.move(legacyDataFile, legacyDataFile.resolveSibling("data.yml.migrated"), StandardCopyOption.REPLACE_EXISTING);
+            logger.info("Migrated data.yml to data.bin");
+        } catch (IOException e) {
+            logger.warning("Migrated data.yml to data.bin but could not rename the old file: " + e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface SnapshotWriter {
+        void write(Path path) throws IOException;
+    }
+}
@@ -1,66 +1,155 @@
 package com.blackmarket.data;
 
+import com.blackmarket.utils.CostMatcher;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.*;
 
 /**
- * Represents an item in the black market pool
+ * Represents an item in the black market pool.
+ * Instances are immutable: changing the weight or costs creates a new instance
+ * with the same id, so the stacks can be shared without defensive copies.
+ * The serialized form is kept from loading or cached on first save, and shared by
+ * instances with the same stacks, so only new items and changed costs are serialized again.
  */
-public class MarketItem {
+public final class MarketItem {
     private final UUID id;
     private final ItemStack itemStack;
     private final List<ItemStack> costItems;
-    private int weight;
+    private final int weight;
+    private final CostMatcher costMatcher;
+    private volatile byte[] itemBytes; // Serialized item, null until first saved unless loaded from storage
+    private volatile List<byte[]> costBytes; // Serialized cost items, null until first saved unless loaded from storage
 
     public MarketItem(ItemStack itemStack, List<ItemStack> costItems, int weight) {
-        this.id = UUID.randomUUID();
-        this.itemStack = itemStack.clone();
-        this.costItems = new ArrayList<>();
-        for (ItemStack cost : costItems) {
-            this.costItems.add(cost.clone());
-        }
-        this.weight = weight;
+        this(UUID.randomUUID(), itemStack, costItems, weight);
     }
 
     public MarketItem(UUID id, ItemStack itemStack, List<ItemStack> costItems, int weight) {
+        this(id, itemStack.clone(), copyOf(costItems), weight, null, null, null);
+    }
+
+    /**
+     * Takes ownership of the given stacks; builds the cost matcher if none is passed
+     */
+    private MarketItem(UUID id, ItemStack itemStack, List<ItemStack> costItems, int weight, CostMatcher costMatcher,
+                       byte[] itemBytes, List<byte[]> costBytes) {
         this.id = id;
-        this.itemStack = itemStack.clone();
-        this.costItems = new ArrayList<>();
-        for (ItemStack cost : costItems) {
-            this.costItems.add(cost.clone());
-        }
+        this.itemStack = itemStack;
+        this.costItems = costItems;
         this.weight = weight;
+        this.costMatcher = costMatcher != null ? costMatcher : new CostMatcher(costItems);
+        this.itemBytes = itemBytes;
+        this.costBytes = costBytes;
+    }
+
+    /**
+     * An item read from storage, taking ownership of the freshly deserialized stacks
+     */
+    static MarketItem stored(UUID id, ItemStack itemStack, List<ItemStack> costItems, int weight) {
+        return new MarketItem(id, itemStack, Collections.unmodifiableList(costItems), weight, null, null, null);
+    }
+
+    /**
+     * An item read from storage together with the bytes it was deserialized from, which become its cached
+     * serialized form so saving it again needs no serialization. Cost bytes must match the cost items one to one.
+     */
+    static MarketItem stored(UUID id, ItemStack itemStack, List<ItemStack> costItems, int weight,
+                             byte[] itemBytes, List<byte[]> costBytes) {
+        return new MarketItem(id, itemStack, Collections.unmodifiableList(costItems), weight, null,
+            itemBytes, Collections.unmodifiableList(costBytes));
+    }
+
+    private static List<ItemStack> copyOf(List<ItemStack> items) {
+        List<ItemStack> copy = new ArrayList<>(items.size());
+        for (ItemStack item : items) {
+            copy.add(item.clone());
+        }
+        return Collections.unmodifiableList(copy);
     }
 
     public UUID getId() {
         return id;
     }
 
+    /**
+     * A copy of the item, e.g. to give to a player
+     */
     public ItemStack getItemStack() {
         return itemStack.clone();
     }
 
+    /**
+     * Copies of the cost items
+     */
     public List<ItemStack> getCostItems() {
-        List<ItemStack> copy = new ArrayList<>();
-        for (ItemStack cost : costItems) {
-            copy.add(cost.clone());
-        }
-        return copy;
+        return copyOf(costItems);
+    }
+
+    /**
+     * The item without copying, for rendering and matching; must not be modified
+     */
+    public ItemStack viewItemStack() {
+        return itemStack;
+    }
+
+    /**
+     * Unmodifiable cost list without copying, for rendering and matching; the stacks must not be modified
+     */
+    public List<ItemStack> viewCostItems() {
+        return costItems;
     }
 
     public int getWeight() {
         return weight;
     }
 
-    public void setWeight(int weight) {
-        this.weight = weight;
+    /**
+     * This item with another weight; the cost matcher is shared
+     */
+    public MarketItem withWeight(int weight) {
+        return new MarketItem(id, itemStack, costItems, weight, costMatcher, itemBytes, costBytes);
+    }
+
+    /**
+     * This item with other cost items, which are copied
+     */
+    public MarketItem withCostItems(List<ItemStack> costItems) {
+        return new MarketItem(id, itemStack, copyOf(costItems), weight, null, itemBytes, null);
+    }
+
+    /**
+     * The item as serialized by {@link ItemStack#serializeAsBytes()}, computed once; must not be modified
+     */
+    byte[] serializedItem() {
+        byte[] bytes = itemBytes;
+        if (bytes == null) {
+            bytes = itemStack.serializeAsBytes();
+            itemBytes = bytes;
+        }
+        return bytes;
     }
 
-    public void setCostItems(List<ItemStack> costItems) {
-        this.costItems.clear();
-        for (ItemStack cost : costItems) {
-            this.costItems.add(cost.clone());
+    /**
+     * The cost items as serialized by {@link ItemStack#serializeAsBytes()}, computed once; must not be modified
+     */
+    List<byte[]> serializedCosts() {
+        List<byte[]> bytes = costBytes;
+        if (bytes == null) {
+            List<byte[]> serialized = new ArrayList<>(costItems.size());
+            for (ItemStack cost : costItems) {
+                serialized.add(cost.serializeAsBytes());
+            }
+            bytes = Collections.unmodifiableList(serialized);
+            costBytes = bytes;
         }
+        return bytes;
+    }
+
+    /**
+     * Matcher for the cost items, built once per cost list
+     */
+    public CostMatcher getCostMatcher() {
+        return costMatcher;
     }
 }
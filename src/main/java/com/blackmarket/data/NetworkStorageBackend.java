@@ -0,0 +1,657 @@
+package com.blackmarket.data;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Stores the black market in a SQL database shared by every server of a network,
+ * e.g. MySQL or MariaDB through the driver bundled with the server, or H2 when the
+ * plugin is built with the h2 profile. Every save bumps a version number that the
+ * other servers poll to pick up the change.
+ *
+ * Rotations are performed by a single server, the holder of a time-bound lease row.
+ * Only the lease holder writes the active items, rotation time and staged rotation; pool edits are
+ * written by whichever server makes them, row by row, so edits of different items made on two
+ * servers at once are both kept. Purchases are stored per rotation, so a
+ * purchase made against an older rotation never counts in the current one.
+ */
+class NetworkStorageBackend implements StorageBackend {
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS bm_pool_items (id CHAR(36) PRIMARY KEY, sort_order INTEGER NOT NULL, item {blob} NOT NULL, weight INTEGER NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_pool_costs (item_id CHAR(36) NOT NULL, slot INTEGER NOT NULL, cost {blob} NOT NULL, PRIMARY KEY (item_id, slot))",
+        "CREATE TABLE IF NOT EXISTS bm_active_items (slot INTEGER PRIMARY KEY, item_id CHAR(36) NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_staged_items (slot INTEGER PRIMARY KEY, item_id CHAR(36) NOT NULL, rotation BIGINT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_state (id INTEGER PRIMARY KEY, version BIGINT NOT NULL, last_rotation BIGINT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_lease (id INTEGER PRIMARY KEY, owner VARCHAR(64) NOT NULL, expires_at BIGINT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_purchases (player CHAR(36) NOT NULL, item_id CHAR(36) NOT NULL, rotation BIGINT NOT NULL, purchased_at BIGINT NOT NULL, PRIMARY KEY (player, item_id, rotation))"
+    };
+    private static final String H2_PREFIX = "jdbc:h2:";
+
+    private final Logger logger;
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final String serverId;
+    private final long leaseMillis;
+    private Connection connection;
+    private PreparedStatement insertPurchase;
+    private PreparedStatement selectPurchases;
+    private PreparedStatement selectVersion;
+    private PreparedStatement renewLease;
+
+    private Map<UUID, MarketItem> storedPool = Map.of(); // Pool items as last loaded or written, to find changed rows
+    private long knownVersion = -1; // Version of the data this server last loaded or wrote
+    private long lastRotationTime; // Rotation that purchases are recorded under
+    private boolean leader;
+    private String leaseOwner;
+
+    NetworkStorageBackend(Logger logger, String jdbcUrl, String username, String password, String serverId, long leaseMillis) {
+        this.logger = logger;
+        this.jdbcUrl = jdbcUrl;
+        this.username = username;
+        this.password = password;
+        this.serverId = serverId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    @Override
+    public String getName() {
+        return "network";
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            if (jdbcUrl == null || jdbcUrl.isBlank()) {
+                throw new SQLException("storage.network.jdbc-url is not set");
+            }
+
+            boolean h2 = jdbcUrl.startsWith(H2_PREFIX);
+            if (h2) {
+                registerH2Driver();
+            }
+
+            connection = DriverManager.getConnection(jdbcUrl, username, password);
+            // A MySQL BLOB holds only 64 KB, too little for items like filled shulker boxes; H2's BLOB has no such limit
+            String blobType = h2 ? "BLOB" : "MEDIUMBLOB";
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl.replace("{blob}", blobType));
+                }
+            }
+            try (PreparedStatement insertState = connection.prepareStatement("INSERT INTO bm_state (id, version, last_rotation) VALUES (1, 0, 0)")) {
+                insertIgnoringDuplicate(insertState); // Another server may have created it first
+            }
+            insertPurchase = connection.prepareStatement("INSERT INTO bm_purchases (player, item_id, rotation, purchased_at) VALUES (?, ?, ?, ?)");
+            selectPurchases = connection.prepareStatement("SELECT item_id FROM bm_purchases WHERE player = ? AND rotation = ?");
+            selectVersion = connection.prepareStatement("SELECT version FROM bm_state WHERE id = 1");
+            renewLease = connection.prepareStatement("UPDATE bm_lease SET owner = ?, expires_at = ? WHERE id = 1 AND (owner = ? OR expires_at < ?)");
+        }
+        return connection;
+    }
+
+    /**
+     * DriverManager only finds drivers through the server's class loader, so the H2 driver
+     * shaded into the plugin jar registers itself by being loaded here
+     */
+    private static void registerH2Driver() throws SQLException {
+        try {
+            Class.forName("org.h2.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("The H2 driver is not included, build the plugin with: mvn -P h2 package", e);
+        }
+    }
+
+    /**
+     * Drop the connection after a failure, so the next call reconnects
+     */
+    private IOException failure(String message, SQLException e) {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException ignored) {
+            // The connection is already broken
+        }
+        connection = null;
+        return new IOException(message, e);
+    }
+
+    /**
+     * Take or keep the rotation lease. Returns whether this server holds it until now + the lease time.
+     */
+    boolean renewLease(long now) throws IOException {
+        try {
+            connection();
+            renewLease.setString(1, serverId);
+            renewLease.setLong(2, now + leaseMillis);
+            renewLease.setString(3, serverId);
+            renewLease.setLong(4, now);
+            leader = renewLease.executeUpdate() == 1;
+
+            if (!leader) {
+                try (PreparedStatement insertLease = connection.prepareStatement("INSERT INTO bm_lease (id, owner, expires_at) VALUES (1, ?, ?)")) {
+                    insertLease.setString(1, serverId);
+                    insertLease.setLong(2, now + leaseMillis);
+                    leader = insertIgnoringDuplicate(insertLease);
+                }
+            }
+
+            leaseOwner = serverId;
+            if (!leader) {
+                try (Statement statement = connection.createStatement();
+                     ResultSet rows = statement.executeQuery("SELECT owner FROM bm_lease WHERE id = 1")) {
+                    leaseOwner = rows.next() ? rows.getString(1) : null;
+                }
+            }
+            return leader;
+        } catch (SQLException e) {
+            leader = false;
+            throw failure("Could not renew the rotation lease", e);
+        }
+    }
+
+    /**
+     * Lock the lease row and check that this server still holds it. Clears the leader flag if not.
+     */
+    private boolean holdsLease(Connection connection, long now) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT owner, expires_at FROM bm_lease WHERE id = 1 FOR UPDATE")) {
+            leader = rows.next() && serverId.equals(rows.getString(1)) && rows.getLong(2) > now;
+        }
+        return leader;
+    }
+
+    /**
+     * Server that held the rotation lease at the last renewal
+     */
+    String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    /**
+     * Whether another server saved since this server last loaded or wrote the data
+     */
+    boolean hasRemoteChanges() throws IOException {
+        try {
+            connection();
+            try (ResultSet rows = selectVersion.executeQuery()) {
+                return rows.next() && rows.getLong(1) != knownVersion;
+            }
+        } catch (SQLException e) {
+            throw failure("Could not read the data version", e);
+        }
+    }
+
+    @Override
+    public DataSnapshot load() throws IOException {
+        return inTransaction("load from database", connection -> {
+            long version = 0;
+            long rotation = 0;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT version, last_rotation FROM bm_state WHERE id = 1")) {
+                if (rows.next()) {
+                    version = rows.getLong(1);
+                    rotation = rows.getLong(2);
+                }
+            }
+
+            // Load cost items grouped by pool item
+            Map<String, List<byte[]>> costs = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT item_id, cost FROM bm_pool_costs ORDER BY item_id, slot")) {
+                while (rows.next()) {
+                    costs.computeIfAbsent(rows.getString(1), k -> new ArrayList<>()).add(rows.getBytes(2));
+                }
+            }
+
+            // Load item pool; the stacks are deserialized once all rows are read
+            List<ParallelDecoder.StoredItem> stored = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT id, item, weight FROM bm_pool_items ORDER BY sort_order")) {
+                while (rows.next()) {
+                    String key = rows.getString(1);
+                    stored.add(new ParallelDecoder.StoredItem(key, rows.getBytes(2), rows.getInt(3), costs.getOrDefault(key, List.of())));
+                }
+            }
+            List<MarketItem> pool = ParallelDecoder.decodePool(stored, logger);
+
+            // Load active items
+            List<UUID> activeItemIds = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT item_id FROM bm_active_items ORDER BY slot")) {
+                while (rows.next()) {
+                    try {
+                        activeItemIds.add(UUID.fromString(rows.getString(1)));
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid UUID in active items: " + rows.getString(1));
+                    }
+                }
+            }
+
+            // Load the staged rotation, if any
+            List<UUID> stagedIds = new ArrayList<>();
+            long stagedTime = 0;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT item_id, rotation FROM bm_staged_items ORDER BY slot")) {
+                while (rows.next()) {
+                    try {
+                        stagedIds.add(UUID.fromString(rows.getString(1)));
+                        stagedTime = rows.getLong(2);
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid UUID in staged items: " + rows.getString(1));
+                    }
+                }
+            }
+
+            knownVersion = version;
+            lastRotationTime = rotation;
+            storedPool = indexById(pool);
+            return new DataSnapshot(pool, activeItemIds, rotation, stagedIds.isEmpty() ? null : new StagedRotation(stagedIds, stagedTime));
+        });
+    }
+
+    @Override
+    public Set<UUID> loadPurchases(UUID playerUuid) throws IOException {
+        try {
+            connection();
+            selectPurchases.setString(1, playerUuid.toString());
+            selectPurchases.setLong(2, lastRotationTime);
+            Set<UUID> purchases = new HashSet<>();
+            try (ResultSet rows = selectPurchases.executeQuery()) {
+                while (rows.next()) {
+                    try {
+                        purchases.add(UUID.fromString(rows.getString(1)));
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid item UUID in purchases: " + rows.getString(1));
+                    }
+                }
+            }
+            return purchases;
+        } catch (SQLException e) {
+            throw failure("Could not load purchases of " + playerUuid, e);
+        }
+    }
+
+    @Override
+    public void loadAllPurchases(BiConsumer<UUID, UUID> consumer) throws IOException {
+        try (PreparedStatement statement = connection().prepareStatement("SELECT player, item_id FROM bm_purchases WHERE rotation = ?")) {
+            statement.setLong(1, lastRotationTime);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    try {
+                        consumer.accept(UUID.fromString(rows.getString(1)), UUID.fromString(rows.getString(2)));
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid UUID in purchases: " + rows.getString(1) + " / " + rows.getString(2));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw failure("Could not load purchases from database", e);
+        }
+    }
+
+    /**
+     * Write the pool if it changed, and the rotation state if it changed and this server holds the lease.
+     * The lease is checked again under a row lock in the same transaction, since it may have expired
+     * since the last renewal. If another server saved in between, or the lease turned out to be lost,
+     * the version is left unknown so the next poll reloads.
+     */
+    @Override
+    public void save(DataSnapshot snapshot) throws IOException {
+        boolean poolChanged = snapshot.changed().contains(DataSnapshot.Section.POOL);
+        boolean rotationChanged = leader && (snapshot.changed().contains(DataSnapshot.Section.ACTIVE_ITEMS)
+            || snapshot.changed().contains(DataSnapshot.Section.ROTATION_TIME));
+        if (!poolChanged && !rotationChanged) {
+            return;
+        }
+
+        long version = inTransaction("save data", connection -> {
+            long previous;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT version FROM bm_state WHERE id = 1 FOR UPDATE")) {
+                previous = rows.next() ? rows.getLong(1) : 0;
+            }
+
+            boolean writeRotation = rotationChanged && holdsLease(connection, System.currentTimeMillis());
+            if (!poolChanged && !writeRotation) {
+                return -1L;
+            }
+            if (poolChanged) {
+                writePoolChanges(connection, snapshot.pool());
+            }
+            if (writeRotation) {
+                writeActiveItems(connection, snapshot.activeItemIds());
+                writeStagedItems(connection, snapshot.stagedRotation());
+            }
+            writeState(connection, previous + 1, writeRotation ? snapshot.lastRotationTime() : -1);
+            return previous;
+        });
+
+        if (rotationChanged && !leader) {
+            logger.warning("Rotation lease expired before the rotation was saved, it was not written");
+            knownVersion = -1;
+        } else if (version == knownVersion) {
+            knownVersion = version + 1;
+        }
+        if (rotationChanged && leader) {
+            lastRotationTime = snapshot.lastRotationTime();
+        }
+        if (poolChanged) {
+            storedPool = indexById(snapshot.pool());
+        }
+    }
+
+    /**
+     * The primary key admits one row per player, item and rotation, so of two servers
+     * recording the same purchase at once only the first insert succeeds
+     */
+    @Override
+    public boolean recordPurchase(UUID playerUuid, UUID itemId, long timestamp) throws IOException {
+        try {
+            connection();
+            insertPurchase.setString(1, playerUuid.toString());
+            insertPurchase.setString(2, itemId.toString());
+            insertPurchase.setLong(3, lastRotationTime);
+            insertPurchase.setLong(4, timestamp);
+            return insertIgnoringDuplicate(insertPurchase);
+        } catch (SQLException e) {
+            throw failure("Could not record purchase", e);
+        }
+    }
+
+    /**
+     * Delete a purchase of the current rotation that was recorded but not paid for
+     */
+    void removePurchase(UUID playerUuid, UUID itemId) throws IOException {
+        try (PreparedStatement statement = connection().prepareStatement("DELETE FROM bm_purchases WHERE player = ? AND item_id = ? AND rotation = ?")) {
+            statement.setString(1, playerUuid.toString());
+            statement.setString(2, itemId.toString());
+            statement.setLong(3, lastRotationTime);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw failure("Could not remove purchase", e);
+        }
+    }
+
+    /**
+     * Forget purchases of earlier rotations; the current rotation's purchases may still be read by other servers
+     */
+    @Override
+    public void clearPurchases() throws IOException {
+        try (PreparedStatement statement = connection().prepareStatement("DELETE FROM bm_purchases WHERE rotation < ?")) {
+            statement.setLong(1, lastRotationTime);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw failure("Could not clear purchases", e);
+        }
+    }
+
+    @Override
+    public void importData(DataSnapshot snapshot, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException {
+        long now = System.currentTimeMillis();
+        inTransaction("import data", connection -> {
+            long previous;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT version FROM bm_state WHERE id = 1 FOR UPDATE")) {
+                previous = rows.next() ? rows.getLong(1) : 0;
+            }
+
+            writePool(connection, snapshot.pool());
+            writeActiveItems(connection, snapshot.activeItemIds());
+            writeStagedItems(connection, snapshot.stagedRotation());
+            writeState(connection, previous + 1, snapshot.lastRotationTime());
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM bm_purchases");
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO bm_purchases (player, item_id, rotation, purchased_at) VALUES (?, ?, ?, ?)")) {
+                for (Map.Entry<UUID, ? extends Collection<UUID>> entry : purchases.entrySet()) {
+                    for (UUID itemId : entry.getValue()) {
+                        insert.setString(1, entry.getKey().toString());
+                        insert.setString(2, itemId.toString());
+                        insert.setLong(3, snapshot.lastRotationTime());
+                        insert.setLong(4, now);
+                        insert.addBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            return previous;
+        });
+    }
+
+    private void writePool(Connection connection, List<MarketItem> pool) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM bm_pool_costs");
+            statement.executeUpdate("DELETE FROM bm_pool_items");
+        }
+
+        // Items cache their serialized form, so unchanged items are not serialized again
+        try (PreparedStatement insertItem = connection.prepareStatement("INSERT INTO bm_pool_items (id, sort_order, item, weight) VALUES (?, ?, ?, ?)");
+             PreparedStatement insertCost = connection.prepareStatement("INSERT INTO bm_pool_costs (item_id, slot, cost) VALUES (?, ?, ?)")) {
+            int position = 0;
+            for (MarketItem item : pool) {
+                String id = item.getId().toString();
+                insertItem.setString(1, id);
+                insertItem.setInt(2, position++);
+                insertItem.setBytes(3, item.serializedItem());
+                insertItem.setInt(4, item.getWeight());
+                insertItem.addBatch();
+
+                int slot = 0;
+                for (byte[] cost : item.serializedCosts()) {
+                    insertCost.setString(1, id);
+                    insertCost.setInt(2, slot++);
+                    insertCost.setBytes(3, cost);
+                    insertCost.addBatch();
+                }
+            }
+            insertItem.executeBatch();
+            insertCost.executeBatch();
+        }
+    }
+
+    /**
+     * Write only the pool rows that differ from what was last loaded or written. Items are
+     * replaced on every edit, so an item is unchanged if it is the very instance stored.
+     * Rows of other items are left alone, so concurrent edits of other items on other servers survive.
+     */
+    private void writePoolChanges(Connection connection, List<MarketItem> pool) throws SQLException {
+        Set<UUID> ids = new HashSet<>();
+        for (MarketItem item : pool) {
+            ids.add(item.getId());
+        }
+
+        try (PreparedStatement deleteItem = connection.prepareStatement("DELETE FROM bm_pool_items WHERE id = ?");
+             PreparedStatement deleteCosts = connection.prepareStatement("DELETE FROM bm_pool_costs WHERE item_id = ?");
+             PreparedStatement updateItem = connection.prepareStatement("UPDATE bm_pool_items SET item = ?, weight = ? WHERE id = ?");
+             PreparedStatement insertItem = connection.prepareStatement("INSERT INTO bm_pool_items (id, sort_order, item, weight) VALUES (?, ?, ?, ?)");
+             PreparedStatement insertCost = connection.prepareStatement("INSERT INTO bm_pool_costs (item_id, slot, cost) VALUES (?, ?, ?)")) {
+            for (UUID id : storedPool.keySet()) {
+                if (!ids.contains(id)) {
+                    deleteCosts.setString(1, id.toString());
+                    deleteCosts.executeUpdate();
+                    deleteItem.setString(1, id.toString());
+                    deleteItem.executeUpdate();
+                }
+            }
+
+            int nextOrder = -1; // Read on the first insert; new items go to the end of the shared order
+            for (MarketItem item : pool) {
+                MarketItem stored = storedPool.get(item.getId());
+                if (stored == item) {
+                    continue;
+                }
+
+                String id = item.getId().toString();
+                updateItem.setBytes(1, item.serializedItem());
+                updateItem.setInt(2, item.getWeight());
+                updateItem.setString(3, id);
+                // The row may be missing even if this server stored it, if another server removed it meanwhile
+                if (updateItem.executeUpdate() == 0) {
+                    if (nextOrder < 0) {
+                        nextOrder = nextSortOrder(connection);
+                    }
+                    insertItem.setString(1, id);
+                    insertItem.setInt(2, nextOrder++);
+                    insertItem.setBytes(3, item.serializedItem());
+                    insertItem.setInt(4, item.getWeight());
+                    insertItem.executeUpdate();
+                } else if (stored != null && stored.viewCostItems() == item.viewCostItems()) {
+                    // A weight change shares the cost list, so the cost rows are still current
+                    continue;
+                }
+
+                deleteCosts.setString(1, id);
+                deleteCosts.executeUpdate();
+                int slot = 0;
+                for (byte[] cost : item.serializedCosts()) {
+                    insertCost.setString(1, id);
+                    insertCost.setInt(2, slot++);
+                    insertCost.setBytes(3, cost);
+                    insertCost.addBatch();
+                }
+                insertCost.executeBatch();
+            }
+        }
+    }
+
+    private static int nextSortOrder(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT MAX(sort_order) FROM bm_pool_items")) {
+            return rows.next() ? rows.getInt(1) + 1 : 0;
+        }
+    }
+
+    private static Map<UUID, MarketItem> indexById(List<MarketItem> pool) {
+        Map<UUID, MarketItem> index = new HashMap<>();
+        for (MarketItem item : pool) {
+            index.put(item.getId(), item);
+        }
+        return index;
+    }
+
+    private void writeActiveItems(Connection connection, List<UUID> activeItemIds) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM bm_active_items");
+        }
+
+        try (PreparedStatement insertActive = connection.prepareStatement("INSERT INTO bm_active_items (slot, item_id) VALUES (?, ?)")) {
+            int slot = 0;
+            for (UUID id : activeItemIds) {
+                insertActive.setInt(1, slot++);
+                insertActive.setString(2, id.toString());
+                insertActive.addBatch();
+            }
+            insertActive.executeBatch();
+        }
+    }
+
+    private void writeStagedItems(Connection connection, StagedRotation staged) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM bm_staged_items");
+        }
+        if (staged == null) {
+            return;
+        }
+
+        try (PreparedStatement insertStaged = connection.prepareStatement("INSERT INTO bm_staged_items (slot, item_id, rotation) VALUES (?, ?, ?)")) {
+            int slot = 0;
+            for (UUID id : staged.itemIds()) {
+                insertStaged.setInt(1, slot++);
+                insertStaged.setString(2, id.toString());
+                insertStaged.setLong(3, staged.rotationTime());
+                insertStaged.addBatch();
+            }
+            insertStaged.executeBatch();
+        }
+    }
+
+    /**
+     * Set the version, and the rotation time unless it is negative
+     */
+    private void writeState(Connection connection, long version, long rotation) throws SQLException {
+        String sql = rotation < 0
+            ? "UPDATE bm_state SET version = ? WHERE id = 1"
+            : "UPDATE bm_state SET version = ?, last_rotation = ? WHERE id = 1";
+        try (PreparedStatement update = connection.prepareStatement(sql)) {
+            update.setLong(1, version);
+            if (rotation >= 0) {
+                update.setLong(2, rotation);
+            }
+            update.executeUpdate();
+        }
+    }
+
+    /**
+     * Run an insert, returning false instead of failing if the row already exists
+     */
+    private static boolean insertIgnoringDuplicate(PreparedStatement insert) throws SQLException {
+        try {
+            insert.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            // SQL state class 23 is an integrity constraint violation, here the primary key
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T inTransaction(String action, SqlWork<T> work) throws IOException {
+        try {
+            Connection connection = connection();
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw failure("Could not " + action, e);
+        }
+    }
+
+    /**
+     * Give up the rotation lease so another server can take over right away
+     */
+    @Override
+    public void close() throws IOException {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            if (leader) {
+                try (PreparedStatement release = connection.prepareStatement("UPDATE bm_lease SET expires_at = 0 WHERE id = 1 AND owner = ?")) {
+                    release.setString(1, serverId);
+                    release.executeUpdate();
+                }
+            }
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Could not close database", e);
+        } finally {
+            connection = null;
+            insertPurchase = null;
+            selectPurchases = null;
+            selectVersion = null;
+            renewLease = null;
+            leader = false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,79 @@
+package com.blackmarket.data;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Decodes stored records in parallel chunks. Deserializing item stacks dominates
+ * loading, so large pools are spread over all cores instead of decoded one by one.
+ */
+final class ParallelDecoder {
+    private static final int CHUNK_SIZE = 64; // Records per task; smaller pools are decoded on the calling thread
+
+    private ParallelDecoder() {
+    }
+
+    /**
+     * Decode records 0 to count - 1, keeping their order. The decoder must be thread-safe
+     * and returns null for records that could not be decoded, which are left out.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> decode(int count, IntFunction<T> decoder) {
+        Object[] results = new Object[count];
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream range = IntStream.range(0, chunks);
+        (chunks > 1 ? range.parallel() : range).forEach(chunk -> {
+            int end = Math.min(count, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                results[i] = decoder.apply(i);
+            }
+        });
+
+        List<T> decoded = new ArrayList<>(count);
+        for (Object result : results) {
+            if (result != null) {
+                decoded.add((T) result);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Deserialize pool items read as raw rows, e.g. from a database. Cost items
+     * that cannot be read are left out, items that cannot be read are skipped.
+     */
+    static List<MarketItem> decodePool(List<StoredItem> items, Logger logger) {
+        return decode(items.size(), i -> {
+            StoredItem stored = items.get(i);
+            try {
+                List<ItemStack> costItems = new ArrayList<>(stored.costs().size());
+                List<byte[]> costBytes = new ArrayList<>(stored.costs().size());
+                for (byte[] cost : stored.costs()) {
+                    try {
+                        costItems.add(ItemStack.deserializeBytes(cost));
+                        costBytes.add(cost);
+                    } catch (Exception e) {
+                        logger.warning("Could not load cost item of market item " + stored.id() + ": " + e.getMessage());
+                    }
+                }
+                return MarketItem.stored(UUID.fromString(stored.id()), ItemStack.deserializeBytes(stored.item()), costItems,
+                    stored.weight(), stored.item(), costBytes);
+            } catch (Exception e) {
+                logger.warning("Could not load market item " + stored.id() + ": " + e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Serialized pool item and its cost items, as stored
+     */
+    record StoredItem(String id, byte[] item, int weight, List<byte[]> costs) {
+    }
+}
@@ -0,0 +1,252 @@
+package com.blackmarket.data;
+
+import java.util.*;
+
+/**
+ * Purchases of online players and of players who left recently.
+ * Entries are loaded when a player logs in and evicted a grace period after
+ * they quit; offline entries are evicted early once the cache is full.
+ * Purchases are written to the backend as they happen, so an entry never
+ * holds unsaved changes and can be dropped at any time.
+ *
+ * Each player is stored as a rotation epoch plus a bitmask of the active slots
+ * they bought, in an open-addressing table keyed by the two halves of their UUID.
+ * A rotation only bumps the epoch; entries stamped with an older epoch count as empty.
+ * The current {@link Rotation} is passed in by the caller, so the slots and epoch
+ * of one call always belong together.
+ */
+class PurchaseCache {
+    static final int MAX_SLOTS = 32; // Bits in the purchase mask
+    private static final int INITIAL_CAPACITY = 64; // Power of two
+
+    private final int maxSize;
+    private final long graceMillis;
+    private final LinkedHashMap<UUID, Long> released = new LinkedHashMap<>(); // Player UUID -> release time, oldest first
+
+    // Open-addressing table with linear probing
+    private long[] mostBits = new long[INITIAL_CAPACITY];
+    private long[] leastBits = new long[INITIAL_CAPACITY];
+    private long[] states = new long[INITIAL_CAPACITY]; // Epoch in the high half, slot mask in the low half
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    PurchaseCache(int maxSize, long graceMillis) {
+        this.maxSize = maxSize;
+        this.graceMillis = graceMillis;
+    }
+
+    /**
+     * Items of a rotation, whose order defines the slot bits, and the epoch its purchases are stamped with
+     */
+    record Rotation(List<UUID> slots, int epoch) {
+        static final Rotation NONE = new Rotation(List.of(), 0);
+
+        /**
+         * Slot bit of an item, or -1 if it is not part of the rotation
+         */
+        int slotOf(UUID itemId) {
+            int slot = slots.indexOf(itemId);
+            return slot < MAX_SLOTS ? slot : -1;
+        }
+    }
+
+    synchronized boolean isLoaded(UUID playerUuid) {
+        return indexOf(playerUuid) >= 0;
+    }
+
+    synchronized boolean contains(UUID playerUuid, UUID itemId, Rotation rotation) {
+        int slot = rotation.slotOf(itemId);
+        int index = indexOf(playerUuid);
+        return slot >= 0 && index >= 0 && (currentMask(states[index], rotation) & (1 << slot)) != 0;
+    }
+
+    /**
+     * @return false if the player had already bought the item, the item is not active, or the player is not loaded
+     */
+    synchronized boolean add(UUID playerUuid, UUID itemId, Rotation rotation) {
+        int slot = rotation.slotOf(itemId);
+        int index = indexOf(playerUuid);
+        if (slot < 0 || index < 0) {
+            return false;
+        }
+
+        int mask = currentMask(states[index], rotation);
+        if ((mask & (1 << slot)) != 0) {
+            return false;
+        }
+        states[index] = pack(rotation.epoch(), mask | (1 << slot));
+        return true;
+    }
+
+    /**
+     * Take back a purchase that could not be stored
+     */
+    synchronized void removePurchase(UUID playerUuid, UUID itemId, Rotation rotation) {
+        int slot = rotation.slotOf(itemId);
+        int index = indexOf(playerUuid);
+        if (slot >= 0 && index >= 0) {
+            states[index] = pack(rotation.epoch(), currentMask(states[index], rotation) & ~(1 << slot));
+        }
+    }
+
+    /**
+     * Store purchases loaded from the backend. If the market rotated while they
+     * were loading, they are stale and the player starts with no purchases.
+     * A reload of a loaded player, e.g. after they bought something on another
+     * server, is merged into their entry, keeping purchases made here meanwhile.
+     */
+    synchronized void put(UUID playerUuid, Collection<UUID> itemIds, int loadedEpoch, Rotation rotation) {
+        int mask = 0;
+        for (UUID itemId : itemIds) {
+            int slot = rotation.slotOf(itemId);
+            if (slot >= 0) {
+                mask |= 1 << slot;
+            }
+        }
+
+        int index = indexOf(playerUuid);
+        if (index >= 0) {
+            if (loadedEpoch == rotation.epoch()) {
+                states[index] = pack(loadedEpoch, currentMask(states[index], rotation) | mask);
+            }
+            return;
+        }
+
+        insert(playerUuid, pack(loadedEpoch, mask));
+        trim();
+    }
+
+    /**
+     * Keep a player's entry until they are released again
+     */
+    synchronized void retain(UUID playerUuid) {
+        released.remove(playerUuid);
+    }
+
+    /**
+     * Start the grace period after which a player's entry is evicted
+     */
+    synchronized void release(UUID playerUuid, long now) {
+        released.remove(playerUuid);
+        released.put(playerUuid, now);
+    }
+
+    synchronized void evictExpired(long now) {
+        Iterator<Map.Entry<UUID, Long>> iterator = released.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Long> entry = iterator.next();
+            if (entry.getValue() + graceMillis > now) {
+                break;
+            }
+            remove(entry.getKey());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Evict released entries, oldest first, until the cache fits its bound.
+     * Retained players are never evicted.
+     */
+    private void trim() {
+        Iterator<UUID> iterator = released.keySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            remove(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private static int currentMask(long state, Rotation rotation) {
+        return (int) (state >>> 32) == rotation.epoch() ? (int) state : 0;
+    }
+
+    private static long pack(int epoch, int mask) {
+        return ((long) epoch << 32) | (mask & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ least;
+        h ^= h >>> 32;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+
+    private int indexOf(UUID playerUuid) {
+        long most = playerUuid.getMostSignificantBits();
+        long least = playerUuid.getLeastSignificantBits();
+        int mask = used.length - 1;
+        for (int index = hash(most, least) & mask; used[index]; index = (index + 1) & mask) {
+            if (mostBits[index] == most && leastBits[index] == least) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(UUID playerUuid, long state) {
+        if ((size + 1) * 4 > used.length * 3) {
+            resize(used.length * 2);
+        }
+        place(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits(), state);
+        size++;
+    }
+
+    private void place(long most, long least, long state) {
+        int mask = used.length - 1;
+        int index = hash(most, least) & mask;
+        while (used[index]) {
+            index = (index + 1) & mask;
+        }
+        used[index] = true;
+        mostBits[index] = most;
+        leastBits[index] = least;
+        states[index] = state;
+    }
+
+    private void resize(int capacity) {
+        long[] oldMost = mostBits;
+        long[] oldLeast = leastBits;
+        long[] oldStates = states;
+        boolean[] oldUsed = used;
+
+        mostBits = new long[capacity];
+        leastBits = new long[capacity];
+        states = new long[capacity];
+        used = new boolean[capacity];
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                place(oldMost[i], oldLeast[i], oldStates[i]);
+            }
+        }
+    }
+
+    /**
+     * Remove an entry and shift later entries of its probe run back, so lookups never need tombstones
+     */
+    private void remove(UUID playerUuid) {
+        int index = indexOf(playerUuid);
+        if (index < 0) {
+            return;
+        }
+
+        int mask = used.length - 1;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (used[next]) {
+            int home = hash(mostBits[next], leastBits[next]) & mask;
+            // Move the entry into the gap unless its home lies cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                mostBits[gap] = mostBits[next];
+                leastBits[gap] = leastBits[next];
+                states[gap] = states[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[gap] = false;
+        size--;
+    }
+}
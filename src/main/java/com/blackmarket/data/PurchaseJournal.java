@@ -0,0 +1,146 @@
+package com.blackmarket.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Append-only journal of purchases stored next to data.bin.
+ * Every purchase is one fixed-size record, so appending costs the same no matter
+ * how many purchases are already stored. The journal is folded into the next
+ * data snapshot and then reset.
+ */
+class PurchaseJournal implements Closeable {
+    private static final int MAGIC = 0x424D4A31; // "BMJ1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 40; // player UUID, item UUID, timestamp
+    private static final int READ_CHUNK_RECORDS = 1024;
+
+    private final Path path;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private FileChannel channel;
+
+    PurchaseJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Open the journal, creating it if needed. A torn record left behind by a crash is discarded.
+     *
+     * @return the number of records in the journal
+     */
+    int open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            reset();
+            return 0;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            channel.close();
+            throw new IOException("Unrecognized purchase journal format");
+        }
+
+        long records = (size - HEADER_SIZE) / RECORD_SIZE;
+        long end = HEADER_SIZE + records * RECORD_SIZE;
+        if (end != size) {
+            channel.truncate(end);
+        }
+
+        channel.position(end);
+        return (int) records;
+    }
+
+    /**
+     * Replay every record written at or after the given time
+     */
+    void replay(long since, BiConsumer<UUID, UUID> consumer) throws IOException {
+        replay(0, since, consumer);
+    }
+
+    /**
+     * Replay every record written at or after the given time, skipping the given number of leading records
+     */
+    void replay(int skip, long since, BiConsumer<UUID, UUID> consumer) throws IOException {
+        ensureOpen();
+        long end = channel.position();
+        ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK_RECORDS * RECORD_SIZE);
+        long position = HEADER_SIZE + (long) skip * RECORD_SIZE;
+        while (position < end) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), end - position));
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, position + chunk.position()) < 0) {
+                    break;
+                }
+            }
+            chunk.flip();
+            position += chunk.limit();
+
+            while (chunk.remaining() >= RECORD_SIZE) {
+                UUID player = new UUID(chunk.getLong(), chunk.getLong());
+                UUID item = new UUID(chunk.getLong(), chunk.getLong());
+                long timestamp = chunk.getLong();
+                if (timestamp >= since) {
+                    consumer.accept(player, item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append one purchase record and force it to disk, so a purchase survives a crash once this returns.
+     * Must only be called from the writer thread.
+     */
+    void append(UUID player, UUID item, long timestamp) throws IOException {
+        ensureOpen();
+        record.clear();
+        record.putLong(player.getMostSignificantBits()).putLong(player.getLeastSignificantBits());
+        record.putLong(item.getMostSignificantBits()).putLong(item.getLeastSignificantBits());
+        record.putLong(timestamp);
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        // The file size changes with every record, so the metadata is forced too
+        channel.force(true);
+    }
+
+    /**
+     * Drop all records once they are contained in a snapshot. Forced like a record, so
+     * records written after a reset never end up behind the dropped ones after a crash.
+     */
+    void reset() throws IOException {
+        ensureOpen();
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        channel.write(header, 0);
+        channel.position(HEADER_SIZE);
+        channel.force(true);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            throw new IOException("Purchase journal is not open");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -1,123 +1,365 @@
 package com.blackmarket.data;
 
 import com.blackmarket.BlackMarket;
+import com.blackmarket.utils.MetricsRegistry.Metric;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Bukkit;
 
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Manages the rotation of black market items
+ * Manages the rotation of black market items.
+ * Rotation times follow the wall clock: the next deadline is computed from the last
+ * rotation time and the configured interval or cron schedule, and a timer on the async
+ * scheduler waits for it before hopping to the global region scheduler to rotate, so
+ * server lag cannot stretch the schedule and rotations also run on Folia.
+ * With network storage only the server holding the rotation lease rotates; the
+ * others pick up its rotation from the database.
+ *
+ * A few minutes before each deadline the next selection is drawn on the async
+ * scheduler, persisted as a staged rotation and pre-rendered for the shop, so the
+ * rotation itself only swaps in the staged items and writes once.
  */
 public class RotationManager {
+    private static final long RETRY_MILLIS = 1000; // Recheck of an overdue rotation that could not run yet
+    private static final long MAX_WAIT_MILLIS = 60_000; // Recheck at least this often to follow clock adjustments
+    private static final DateTimeFormatter NEXT_ROTATION_FORMAT = DateTimeFormatter.ofPattern("EEE HH:mm", Locale.ENGLISH);
+
     private final BlackMarket plugin;
     private final DataManager dataManager;
-    private int taskId = -1;
+    private final Object taskLock = new Object(); // Guards rotationTask and running
+    private ScheduledTask rotationTask;
+    private boolean running;
+    private WeightedSampler sampler;
+    private int samplerVersion;
+    private volatile long rotationIntervalHours; // Read once instead of on every countdown update
+    private volatile int itemsPerRotation;
+    private volatile RotationSchedule schedule;
+    private volatile boolean cronSchedule;
+    private volatile ZoneId zone;
+    private volatile NextRotation nextRotation; // Cached deadline of the last seen rotation time
+    private volatile long stagingMillis; // How long before a deadline its rotation is staged, 0 to disable
+    private volatile long stagingDeadline; // Deadline a staging task was last started for
 
     public RotationManager(BlackMarket plugin, DataManager dataManager) {
         this.plugin = plugin;
         this.dataManager = dataManager;
+        reload();
     }
 
-    public void startRotationScheduler() {
-        long rotationIntervalHours = plugin.getConfig().getLong("rotation-interval-hours", 24);
-        long rotationIntervalTicks = rotationIntervalHours * 60 * 60 * 20; // Convert hours to ticks (20 ticks/second)
+    /**
+     * Re-read the rotation interval and schedule after the config was reloaded
+     */
+    public void reload() {
+        rotationIntervalHours = plugin.getConfig().getLong("rotation-interval-hours", 24);
+        stagingMillis = Math.max(0, plugin.getConfig().getLong("rotation-staging-minutes", 5)) * 60 * 1000;
 
-        // Check if rotation is needed on startup
-        long timeSinceLastRotation = System.currentTimeMillis() - dataManager.getLastRotationTime();
-        long rotationIntervalMillis = rotationIntervalHours * 60 * 60 * 1000;
+        // Purchases are tracked as one bit per slot, so there can be no more slots than bits
+        int configuredItems = plugin.getConfig().getInt("items-per-rotation", 3);
+        itemsPerRotation = Math.max(1, Math.min(PurchaseCache.MAX_SLOTS, configuredItems));
+        if (itemsPerRotation != configuredItems) {
+            plugin.getLogger().warning("items-per-rotation must be between 1 and " + PurchaseCache.MAX_SLOTS
+                + ", using " + itemsPerRotation + " instead of " + configuredItems);
+        }
 
-        if (timeSinceLastRotation >= rotationIntervalMillis || dataManager.getActiveItems().isEmpty()) {
-            // Perform rotation immediately if needed
-            Bukkit.getScheduler().runTask(plugin, this::performRotation);
+        ZoneId zone = ZoneId.systemDefault();
+        String zoneName = plugin.getConfig().getString("rotation-time-zone", "");
+        if (!zoneName.isBlank()) {
+            try {
+                zone = ZoneId.of(zoneName);
+            } catch (DateTimeException e) {
+                plugin.getLogger().warning("Unknown rotation-time-zone '" + zoneName + "', using " + zone);
+            }
         }
 
-        // Schedule periodic rotations
-        taskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, 
-            this::performRotation, 
-            rotationIntervalTicks, 
-            rotationIntervalTicks
-        );
+        RotationSchedule schedule = RotationSchedule.interval(rotationIntervalHours * 60 * 60 * 1000);
+        boolean cron = false;
+        String expression = plugin.getConfig().getString("rotation-schedule", "");
+        if (!expression.isBlank()) {
+            try {
+                schedule = RotationSchedule.cron(expression, zone);
+                cron = true;
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid rotation-schedule '" + expression + "' (" + e.getMessage() + "), using rotation-interval-hours");
+            }
+        }
+
+        this.zone = zone;
+        this.schedule = schedule;
+        this.cronSchedule = cron;
+
+        synchronized (taskLock) {
+            if (running) {
+                // The schedule or the number of items may have changed, so stage again
+                stagingDeadline = 0;
+                if (dataManager.getStagedRotation() != null && dataManager.isRotationLeader()) {
+                    dataManager.setStagedRotation(null);
+                }
+                scheduleNext();
+            }
+        }
+    }
+
+    public long getRotationIntervalHours() {
+        return rotationIntervalHours;
+    }
+
+    /**
+     * Whether rotations follow a cron schedule instead of a fixed interval
+     */
+    public boolean hasCronSchedule() {
+        return cronSchedule;
+    }
+
+    public void startRotationScheduler() {
+        synchronized (taskLock) {
+            running = true;
+        }
+        // Check right away, e.g. to catch up on a rotation missed while the server was down
+        Bukkit.getGlobalRegionScheduler().run(plugin, task -> onTimer());
+        dataManager.whenReady().thenRun(this::wake);
+    }
+
+    /**
+     * Check again right away instead of at the end of the current wait, e.g. once the
+     * data is loaded, the pool gets its first item or this server takes over the lease
+     */
+    public void wake() {
+        synchronized (taskLock) {
+            if (!running) {
+                return;
+            }
+            if (rotationTask != null) {
+                rotationTask.cancel();
+                rotationTask = null;
+            }
+        }
+        Bukkit.getGlobalRegionScheduler().run(plugin, task -> onTimer());
     }
 
     public void stopRotationScheduler() {
-        if (taskId != -1) {
-            Bukkit.getScheduler().cancelTask(taskId);
-            taskId = -1;
+        synchronized (taskLock) {
+            running = false;
+            if (rotationTask != null) {
+                rotationTask.cancel();
+                rotationTask = null;
+            }
+        }
+    }
+
+    /**
+     * Rotate or stage the next rotation if due, then wait for the next deadline. Runs on the global region thread.
+     */
+    private void onTimer() {
+        rotateIfDue();
+        stageIfDue();
+        synchronized (taskLock) {
+            if (running) {
+                scheduleNext();
+            }
+        }
+    }
+
+    /**
+     * Wait on the async scheduler until the next deadline, replacing any earlier wait.
+     * While this server cannot rotate at all it only checks back every MAX_WAIT_MILLIS;
+     * {@link #wake()} cuts that wait short when that changes.
+     */
+    private void scheduleNext() {
+        if (rotationTask != null) {
+            rotationTask.cancel();
+        }
+
+        long remaining = getTimeUntilNextRotation();
+        long delay = remaining > 0 ? Math.min(remaining, MAX_WAIT_MILLIS) : canRotate() ? RETRY_MILLIS : MAX_WAIT_MILLIS;
+        rotationTask = Bukkit.getAsyncScheduler().runDelayed(plugin,
+            task -> Bukkit.getGlobalRegionScheduler().run(plugin, scheduled -> onTimer()),
+            delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rotate if this server leads rotations and the current rotation has run out.
+     * After downtime only the latest missed rotation runs, stamped with its own due
+     * time, so later rotations stay on the schedule.
+     */
+    private void rotateIfDue() {
+        if (!canRotate()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long last = dataManager.getLastRotationTime();
+        if (last <= 0 || dataManager.getActiveItems().isEmpty()) {
+            rotate(now);
+            return;
+        }
+
+        long due = schedule.latestDue(last, now);
+        if (due >= 0) {
+            rotate(due);
+        }
+    }
+
+    /**
+     * Whether this server has what it needs to rotate: loaded data, the lease and a non-empty pool
+     */
+    private boolean canRotate() {
+        return dataManager.isReady() && dataManager.isRotationLeader() && dataManager.getPoolSize() > 0;
+    }
+
+    /**
+     * Start drawing the next rotation on the async scheduler once its deadline is
+     * within the staging window, unless it was already staged
+     */
+    private void stageIfDue() {
+        long deadline = getNextRotationTime();
+        long remaining = deadline - System.currentTimeMillis();
+        if (stagingMillis == 0 || remaining <= 0 || remaining > stagingMillis || stagingDeadline == deadline || !canRotate()) {
+            return;
         }
+
+        StagedRotation staged = dataManager.getStagedRotation();
+        if (staged != null && staged.rotationTime() == deadline) {
+            // Staged before a restart; render it again, the prepared shop was not persisted
+            stagingDeadline = deadline;
+            Bukkit.getAsyncScheduler().runNow(plugin, task -> prepareShop(staged));
+            return;
+        }
+
+        stagingDeadline = deadline;
+        Bukkit.getAsyncScheduler().runNow(plugin, task -> stage(deadline));
     }
 
+    /**
+     * Draw and persist the items of the rotation due at the given time. Synchronized
+     * because the sampler is shared with rotations.
+     */
+    private synchronized void stage(long deadline) {
+        Collection<MarketItem> pool = dataManager.getPoolItems();
+        if (pool.isEmpty() || !dataManager.isRotationLeader() || dataManager.getLastRotationTime() >= deadline) {
+            return;
+        }
+
+        StagedRotation staged = new StagedRotation(selectWeightedRandomItems(pool, getItemsPerRotation()), deadline);
+        dataManager.setStagedRotation(staged);
+        prepareShop(staged);
+    }
+
+    private void prepareShop(StagedRotation staged) {
+        List<MarketItem> items = resolve(staged);
+        if (items != null) {
+            plugin.getShopRenderCache().prepare(items);
+        }
+    }
+
+    /**
+     * Market items of a staged rotation, or null if any of them left the pool since it was staged
+     */
+    private List<MarketItem> resolve(StagedRotation staged) {
+        List<MarketItem> items = new ArrayList<>(staged.itemIds().size());
+        for (UUID id : staged.itemIds()) {
+            MarketItem item = dataManager.getMarketItem(id);
+            if (item == null) {
+                return null;
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Rotate now
+     */
     public void performRotation() {
-        Map<UUID, MarketItem> pool = dataManager.getItemPool();
-        
+        rotate(System.currentTimeMillis());
+    }
+
+    /**
+     * Rotate, stamping the rotation with the given time. Synchronized because admins
+     * can force a rotation from any region thread.
+     */
+    private synchronized void rotate(long rotationTime) {
+        if (!dataManager.isRotationLeader()) {
+            plugin.getLogger().warning("Cannot rotate: server " + dataManager.getRotationLeaderId() + " holds the rotation lease");
+            return;
+        }
+
+        long start = System.nanoTime();
+        Collection<MarketItem> pool = dataManager.getPoolItems();
+
         if (pool.isEmpty()) {
             plugin.getLogger().warning("Cannot rotate: item pool is empty");
             return;
         }
 
-        // Use weighted random selection
-        List<UUID> selectedIds = selectWeightedRandomItems(pool, Math.min(3, pool.size()));
-        
-        dataManager.setActiveItems(selectedIds);
-        dataManager.clearPurchaseHistory();
-        dataManager.setLastRotationTime(System.currentTimeMillis());
-        
+        // Take the staged selection if it was drawn for this rotation, otherwise draw now
+        StagedRotation staged = dataManager.getStagedRotation();
+        List<UUID> selectedIds = staged != null && staged.rotationTime() == rotationTime && resolve(staged) != null
+            ? staged.itemIds()
+            : selectWeightedRandomItems(pool, getItemsPerRotation());
+
+        dataManager.applyRotation(selectedIds, rotationTime);
+
         plugin.getLogger().info("Black market items rotated. Selected " + selectedIds.size() + " items.");
+        plugin.getMetrics().record(Metric.ROTATION, start);
     }
 
     /**
-     * Select random items from the pool using weighted selection
+     * Select random items from the pool using weighted selection.
+     * The sampler is rebuilt only when the pool has changed since the last rotation.
      */
-    private List<UUID> selectWeightedRandomItems(Map<UUID, MarketItem> pool, int count) {
-        List<UUID> selected = new ArrayList<>();
-        List<UUID> available = new ArrayList<>(pool.keySet());
-        Random random = new Random();
-
-        while (selected.size() < count && !available.isEmpty()) {
-            // Calculate total weight of available items
-            int totalWeight = 0;
-            for (UUID id : available) {
-                MarketItem item = pool.get(id);
-                if (item != null) {
-                    totalWeight += item.getWeight();
-                }
-            }
+    private List<UUID> selectWeightedRandomItems(Collection<MarketItem> pool, int count) {
+        int version = dataManager.getPoolVersion();
+        if (sampler == null || samplerVersion != version) {
+            sampler = new WeightedSampler(pool);
+            samplerVersion = version;
+        }
+        return sampler.sample(count, ThreadLocalRandom.current());
+    }
 
-            if (totalWeight <= 0) {
-                // If no items have weight, select randomly
-                UUID randomId = available.remove(random.nextInt(available.size()));
-                selected.add(randomId);
-                continue;
-            }
+    /**
+     * Number of items to put on sale each rotation
+     */
+    public int getItemsPerRotation() {
+        return itemsPerRotation;
+    }
 
-            // Select based on weight
-            int randomWeight = random.nextInt(totalWeight);
-            int currentWeight = 0;
-
-            for (int i = 0; i < available.size(); i++) {
-                UUID id = available.get(i);
-                MarketItem item = pool.get(id);
-                
-                if (item != null) {
-                    currentWeight += item.getWeight();
-                    
-                    if (randomWeight < currentWeight) {
-                        selected.add(id);
-                        available.remove(i);
-                        break;
-                    }
-                }
-            }
+    /**
+     * Wall-clock time of the next rotation, derived from the last rotation time
+     */
+    public long getNextRotationTime() {
+        long last = dataManager.getLastRotationTime();
+        RotationSchedule schedule = this.schedule;
+        NextRotation cached = nextRotation;
+        if (cached != null && cached.schedule == schedule && cached.after == last) {
+            return cached.time;
         }
 
-        return selected;
+        long time = schedule.next(last);
+        nextRotation = new NextRotation(schedule, last, time);
+        return time;
     }
 
     public long getTimeUntilNextRotation() {
-        long rotationIntervalHours = plugin.getConfig().getLong("rotation-interval-hours", 24);
-        long rotationIntervalMillis = rotationIntervalHours * 60 * 60 * 1000;
-        long timeSinceLastRotation = System.currentTimeMillis() - dataManager.getLastRotationTime();
-        long timeRemaining = rotationIntervalMillis - timeSinceLastRotation;
-        
-        return Math.max(0, timeRemaining);
+        if (dataManager.getActiveItems().isEmpty()) {
+            return 0;
+        }
+        return Math.max(0, getNextRotationTime() - System.currentTimeMillis());
+    }
+
+    /**
+     * Day and time of the next rotation in the schedule's time zone, e.g. "Mon 18:00"
+     */
+    public String formatNextRotation() {
+        return NEXT_ROTATION_FORMAT.format(Instant.ofEpochMilli(getNextRotationTime()).atZone(zone));
+    }
+
+    private record NextRotation(RotationSchedule schedule, long after, long time) {
     }
 }
@@ -0,0 +1,195 @@
+package com.blackmarket.data;
+
+import java.time.*;
+import java.util.BitSet;
+
+/**
+ * When rotations are due, in wall-clock time: either a fixed interval after the
+ * previous rotation, or a cron expression (minute hour day-of-month month day-of-week)
+ * evaluated in a time zone. Cron fields accept *, numbers, ranges, lists and steps,
+ * e.g. "0 18 * * *" for daily at 18:00 or "0 0,12 * * 1-5" for twice a day on weekdays.
+ */
+abstract class RotationSchedule {
+
+    /**
+     * First rotation time strictly after the given time, in epoch milliseconds
+     */
+    abstract long next(long after);
+
+    /**
+     * Latest rotation time that fell due after the previous rotation and not after now,
+     * or -1 if none did. Used to catch up once after the server was down through several.
+     */
+    long latestDue(long previous, long now) {
+        long due = next(previous);
+        if (due > now) {
+            return -1;
+        }
+
+        for (long next = next(due); next <= now; next = next(due)) {
+            due = next;
+        }
+        return due;
+    }
+
+    static RotationSchedule interval(long intervalMillis) {
+        return new Interval(Math.max(1, intervalMillis));
+    }
+
+    /**
+     * Parse a five-field cron expression; throws IllegalArgumentException if it is malformed
+     */
+    static RotationSchedule cron(String expression, ZoneId zone) {
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("expected 5 fields (minute hour day month weekday), got " + fields.length);
+        }
+
+        BitSet daysOfWeek = parseField(fields[4], 0, 7);
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0); // Both 0 and 7 mean Sunday
+        }
+        return new Cron(parseField(fields[0], 0, 59), parseField(fields[1], 0, 23), parseField(fields[2], 1, 31),
+            parseField(fields[3], 1, 12), daysOfWeek, !fields[2].startsWith("*"), !fields[4].startsWith("*"), zone);
+    }
+
+    /**
+     * Values of one cron field, e.g. "*", "5", "1-5", "0-59/15" or "0,30"
+     */
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet values = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max);
+                part = part.substring(0, slash);
+            }
+
+            int from;
+            int to;
+            if (part.equals("*")) {
+                from = min;
+                to = max;
+            } else if (part.indexOf('-') > 0) {
+                from = parseNumber(part.substring(0, part.indexOf('-')), min, max);
+                to = parseNumber(part.substring(part.indexOf('-') + 1), min, max);
+            } else {
+                from = parseNumber(part, min, max);
+                to = slash >= 0 ? max : from;
+            }
+
+            if (from > to) {
+                throw new IllegalArgumentException("empty range " + part);
+            }
+            for (int value = from; value <= to; value += step) {
+                values.set(value);
+            }
+        }
+        return values;
+    }
+
+    private static int parseNumber(String text, int min, int max) {
+        int value;
+        try {
+            value = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + text);
+        }
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(value + " is outside " + min + "-" + max);
+        }
+        return value;
+    }
+
+    private static final class Interval extends RotationSchedule {
+        private final long intervalMillis;
+
+        private Interval(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        @Override
+        long next(long after) {
+            return after + intervalMillis;
+        }
+
+        @Override
+        long latestDue(long previous, long now) {
+            if (now < previous + intervalMillis) {
+                return -1;
+            }
+            // Stay on the grid of the previous rotation instead of restarting it from now
+            return previous + (now - previous) / intervalMillis * intervalMillis;
+        }
+    }
+
+    private static final class Cron extends RotationSchedule {
+        private static final int MAX_DAYS = 366 * 8; // Enough to reach any valid day, e.g. February 29
+
+        private final BitSet minutes;
+        private final BitSet hours;
+        private final BitSet daysOfMonth;
+        private final BitSet months;
+        private final BitSet daysOfWeek;
+        private final boolean dayOfMonthRestricted;
+        private final boolean dayOfWeekRestricted;
+        private final ZoneId zone;
+
+        private Cron(BitSet minutes, BitSet hours, BitSet daysOfMonth, BitSet months, BitSet daysOfWeek,
+                     boolean dayOfMonthRestricted, boolean dayOfWeekRestricted, ZoneId zone) {
+            this.minutes = minutes;
+            this.hours = hours;
+            this.daysOfMonth = daysOfMonth;
+            this.months = months;
+            this.daysOfWeek = daysOfWeek;
+            this.dayOfMonthRestricted = dayOfMonthRestricted;
+            this.dayOfWeekRestricted = dayOfWeekRestricted;
+            this.zone = zone;
+        }
+
+        /**
+         * Walk day by day, and within a matching day jump straight to the first matching hour and minute
+         */
+        @Override
+        long next(long after) {
+            LocalDateTime start = LocalDateTime.ofInstant(Instant.ofEpochMilli(after), zone).withSecond(0).withNano(0).plusMinutes(1);
+            LocalDate date = start.toLocalDate();
+
+            for (int day = 0; day < MAX_DAYS; day++, date = date.plusDays(1)) {
+                if (!matchesDay(date)) {
+                    continue;
+                }
+
+                boolean firstDay = day == 0;
+                for (int hour = hours.nextSetBit(firstDay ? start.getHour() : 0); hour >= 0; hour = hours.nextSetBit(hour + 1)) {
+                    int minute = minutes.nextSetBit(firstDay && hour == start.getHour() ? start.getMinute() : 0);
+                    if (minute < 0) {
+                        continue;
+                    }
+
+                    // Times skipped by a daylight saving change are moved forward by ZonedDateTime
+                    long time = ZonedDateTime.of(date, LocalTime.of(hour, minute), zone).toInstant().toEpochMilli();
+                    if (time > after) {
+                        return time;
+                    }
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private boolean matchesDay(LocalDate date) {
+            if (!months.get(date.getMonthValue())) {
+                return false;
+            }
+
+            boolean dayOfMonth = daysOfMonth.get(date.getDayOfMonth());
+            boolean dayOfWeek = daysOfWeek.get(date.getDayOfWeek().getValue() % 7);
+            // Like cron, a restricted day of month and day of week match if either does
+            if (dayOfMonthRestricted && dayOfWeekRestricted) {
+                return dayOfMonth || dayOfWeek;
+            }
+            return dayOfMonth && dayOfWeek;
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.blackmarket.data;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Versioned binary snapshot of the black market data (data.bin).
+ *
+ * <pre>
+ * header    magic, version, last rotation time
+ * pool      per item: id, weight, length-prefixed item bytes, cost count, length-prefixed cost bytes
+ * active    count, item ids, then the staged rotation: time, count, item ids (count 0 if none)
+ * purchases record count, (player id, item id) records sorted by player
+ * index     pool count, per item: id, offset of its pool record
+ * footer    active offset, purchases offset, index offset, magic
+ * </pre>
+ *
+ * The footer lets the file be written in a single streaming pass, and the
+ * index lets the reader jump straight to any pool record. Purchases are fixed-size
+ * records sorted by player, so one player's purchases can be found by binary search.
+ * Version 1 files stored purchases grouped per player and are still readable.
+ * Files before version 3 have no staged rotation.
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x424D4431; // "BMD1"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+    private static final int FOOTER_SIZE = 28;
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int PURCHASE_RECORD_SIZE = 32;
+    private static final int COPY_CHUNK_SIZE = 1 << 16;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Write a snapshot and its purchases to the given path, replacing any existing file
+     */
+    static void write(Path path, DataSnapshot snapshot, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException {
+        try (DataOutputStream out = open(path)) {
+            writeHeader(out, snapshot.lastRotationTime());
+
+            // Items cache their serialized form, so unchanged items are not serialized again
+            long[] offsets = new long[snapshot.pool().size()];
+            int i = 0;
+            for (MarketItem item : snapshot.pool()) {
+                offsets[i++] = out.size();
+                writeUuid(out, item.getId());
+                out.writeInt(item.getWeight());
+                writeBlob(out, item.serializedItem());
+                List<byte[]> costs = item.serializedCosts();
+                out.writeInt(costs.size());
+                for (byte[] cost : costs) {
+                    writeBlob(out, cost);
+                }
+            }
+
+            long activeOffset = out.size();
+            writeActive(out, snapshot.activeItemIds(), snapshot.stagedRotation());
+
+            long purchasesOffset = out.size();
+            writePurchases(out, purchases);
+
+            long indexOffset = out.size();
+            out.writeInt(offsets.length);
+            i = 0;
+            for (MarketItem item : snapshot.pool()) {
+                writeUuid(out, item.getId());
+                out.writeLong(offsets[i++]);
+            }
+
+            writeFooter(out, activeOffset, purchasesOffset, indexOffset);
+        }
+    }
+
+    /**
+     * Write a snapshot whose pool is unchanged since the source was written. The pool
+     * records and index are copied byte for byte and only the rotation state is encoded.
+     * Purchases are copied as well if none are given; this needs a source that can copy them.
+     */
+    static void rewriteRotation(Path path, Reader source, DataSnapshot snapshot, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException {
+        try (DataOutputStream out = open(path)) {
+            writeHeader(out, snapshot.lastRotationTime());
+            source.copyRange(out, HEADER_SIZE, source.activeOffset);
+
+            writeActive(out, snapshot.activeItemIds(), snapshot.stagedRotation());
+
+            long purchasesOffset = out.size();
+            if (purchases != null) {
+                writePurchases(out, purchases);
+            } else {
+                source.copyRange(out, source.purchasesOffset, source.indexOffset);
+            }
+
+            // Pool records keep their offsets, so the index stays valid
+            long indexOffset = out.size();
+            source.copyRange(out, source.indexOffset, source.buffer.capacity() - FOOTER_SIZE);
+
+            writeFooter(out, source.activeOffset, purchasesOffset, indexOffset);
+        }
+    }
+
+    /**
+     * Write a copy of an existing snapshot with its purchases replaced.
+     * The pool and index are copied byte for byte without deserializing anything; the
+     * active items are encoded again, since older sources lack the staged rotation.
+     */
+    static void rewritePurchases(Path path, Reader source, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException {
+        try (DataOutputStream out = open(path)) {
+            writeHeader(out, source.lastRotationTime);
+            source.copyRange(out, HEADER_SIZE, source.activeOffset);
+
+            writeActive(out, source.readActiveItems(), source.readStagedRotation());
+
+            long purchasesOffset = out.size();
+            writePurchases(out, purchases);
+
+            long indexOffset = out.size();
+            source.copyRange(out, source.indexOffset, source.buffer.capacity() - FOOTER_SIZE);
+
+            writeFooter(out, source.activeOffset, purchasesOffset, indexOffset);
+        }
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), COPY_CHUNK_SIZE));
+    }
+
+    private static void writeHeader(DataOutputStream out, long lastRotationTime) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(lastRotationTime);
+    }
+
+    private static void writeActive(DataOutputStream out, List<UUID> activeItemIds, StagedRotation staged) throws IOException {
+        out.writeInt(activeItemIds.size());
+        for (UUID id : activeItemIds) {
+            writeUuid(out, id);
+        }
+
+        if (staged == null) {
+            out.writeLong(0);
+            out.writeInt(0);
+            return;
+        }
+        out.writeLong(staged.rotationTime());
+        out.writeInt(staged.itemIds().size());
+        for (UUID id : staged.itemIds()) {
+            writeUuid(out, id);
+        }
+    }
+
+    private static void writePurchases(DataOutputStream out, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException {
+        List<UUID> players = new ArrayList<>(purchases.keySet());
+        Collections.sort(players);
+
+        int count = 0;
+        for (Collection<UUID> items : purchases.values()) {
+            count += items.size();
+        }
+
+        out.writeInt(count);
+        for (UUID player : players) {
+            for (UUID itemId : purchases.get(player)) {
+                writeUuid(out, player);
+                writeUuid(out, itemId);
+            }
+        }
+    }
+
+    private static void writeFooter(DataOutputStream out, long activeOffset, long purchasesOffset, long indexOffset) throws IOException {
+        out.writeLong(activeOffset);
+        out.writeLong(purchasesOffset);
+        out.writeLong(indexOffset);
+        out.writeInt(MAGIC);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static void writeBlob(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Memory-mapped reader over a snapshot file. All reads use absolute
+     * positions, so a reader can be shared between threads until it is closed.
+     */
+    static final class Reader {
+        private static final Unmapper UNMAPPER = Unmapper.find();
+
+        private final MappedByteBuffer buffer;
+        private final int version;
+        private final long lastRotationTime;
+        private final int activeOffset;
+        private final int purchasesOffset;
+        private final int indexOffset;
+        private final int poolSize;
+
+        private Reader(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            int size = buffer.capacity();
+            if (size < HEADER_SIZE + FOOTER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC) {
+                throw new IOException("Not a black market snapshot file");
+            }
+            this.version = buffer.getInt(4);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            this.lastRotationTime = buffer.getLong(8);
+            this.activeOffset = checkOffset(buffer.getLong(size - FOOTER_SIZE), size);
+            this.purchasesOffset = checkOffset(buffer.getLong(size - FOOTER_SIZE + 8), size);
+            this.indexOffset = checkOffset(buffer.getLong(size - FOOTER_SIZE + 16), size);
+            this.poolSize = buffer.getInt(indexOffset);
+            if (indexOffset + 4 + (long) poolSize * INDEX_ENTRY_SIZE > size - FOOTER_SIZE) {
+                throw new IOException("Snapshot index is truncated");
+            }
+        }
+
+        /**
+         * Map a snapshot file into memory
+         */
+        static Reader open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot file is too large");
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                try {
+                    return new Reader(buffer);
+                } catch (IOException e) {
+                    // Release the mapping right away, so the broken file can be moved aside
+                    UNMAPPER.unmap(buffer);
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Release the mapping now rather than when the buffer is garbage collected.
+         * A mapped file cannot be replaced on Windows, and every save maps a new file.
+         * The reader must not be used after this.
+         */
+        void close() {
+            UNMAPPER.unmap(buffer);
+        }
+
+        private static int checkOffset(long offset, int size) throws IOException {
+            if (offset < HEADER_SIZE || offset > size - FOOTER_SIZE) {
+                throw new IOException("Snapshot offset out of range: " + offset);
+            }
+            return (int) offset;
+        }
+
+        long lastRotationTime() {
+            return lastRotationTime;
+        }
+
+        int poolSize() {
+            return poolSize;
+        }
+
+        /**
+         * Id of the pool record at the given index position, read without touching the record
+         */
+        UUID poolId(int index) {
+            int position = indexOffset + 4 + index * INDEX_ENTRY_SIZE;
+            return new UUID(buffer.getLong(position), buffer.getLong(position + 8));
+        }
+
+        /**
+         * Whether the purchases section is in the current format, so it can be copied as is
+         */
+        boolean canCopyPurchases() {
+            return version >= 2;
+        }
+
+        /**
+         * Read and deserialize the pool record at the given index position
+         */
+        MarketItem readPoolItem(int index) {
+            int position = (int) buffer.getLong(indexOffset + 4 + index * INDEX_ENTRY_SIZE + 16);
+            UUID id = new UUID(buffer.getLong(position), buffer.getLong(position + 8));
+            int weight = buffer.getInt(position + 16);
+            position += 20;
+
+            byte[] itemBytes = readBlob(position);
+            position += 4 + itemBytes.length;
+            ItemStack itemStack = ItemStack.deserializeBytes(itemBytes);
+
+            int costCount = buffer.getInt(position);
+            position += 4;
+            List<ItemStack> costItems = new ArrayList<>(costCount);
+            List<byte[]> costBytes = new ArrayList<>(costCount);
+            for (int i = 0; i < costCount; i++) {
+                byte[] bytes = readBlob(position);
+                position += 4 + bytes.length;
+                costItems.add(ItemStack.deserializeBytes(bytes));
+                costBytes.add(bytes);
+            }
+
+            return MarketItem.stored(id, itemStack, costItems, weight, itemBytes, costBytes);
+        }
+
+        private void copyRange(DataOutputStream out, int from, int to) throws IOException {
+            byte[] chunk = new byte[COPY_CHUNK_SIZE];
+            for (int position = from; position < to; position += COPY_CHUNK_SIZE) {
+                int length = Math.min(COPY_CHUNK_SIZE, to - position);
+                buffer.get(position, chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        }
+
+        private byte[] readBlob(int position) {
+            byte[] bytes = new byte[buffer.getInt(position)];
+            buffer.get(position + 4, bytes);
+            return bytes;
+        }
+
+        List<UUID> readActiveItems() {
+            int count = buffer.getInt(activeOffset);
+            List<UUID> ids = new ArrayList<>(count);
+            int position = activeOffset + 4;
+            for (int i = 0; i < count; i++, position += 16) {
+                ids.add(new UUID(buffer.getLong(position), buffer.getLong(position + 8)));
+            }
+            return ids;
+        }
+
+        /**
+         * The staged rotation stored after the active items, or null if there is none
+         */
+        StagedRotation readStagedRotation() {
+            if (version < 3) {
+                return null;
+            }
+
+            int position = activeOffset + 4 + buffer.getInt(activeOffset) * 16;
+            long rotationTime = buffer.getLong(position);
+            int count = buffer.getInt(position + 8);
+            if (count == 0) {
+                return null;
+            }
+            position += 12;
+            List<UUID> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++, position += 16) {
+                ids.add(readUuid(position));
+            }
+            return new StagedRotation(ids, rotationTime);
+        }
+
+        /**
+         * Stream every stored purchase as (player, item) pairs
+         */
+        void readPurchases(BiConsumer<UUID, UUID> consumer) {
+            if (version == 1) {
+                readGroupedPurchases(consumer);
+                return;
+            }
+
+            int count = buffer.getInt(purchasesOffset);
+            int position = purchasesOffset + 4;
+            for (int i = 0; i < count; i++, position += PURCHASE_RECORD_SIZE) {
+                consumer.accept(readUuid(position), readUuid(position + 16));
+            }
+        }
+
+        /**
+         * Stream the items one player bought, found by binary search over the sorted records
+         */
+        void readPurchases(UUID player, Consumer<UUID> consumer) {
+            if (version == 1) {
+                readGroupedPurchases((playerUuid, itemId) -> {
+                    if (playerUuid.equals(player)) {
+                        consumer.accept(itemId);
+                    }
+                });
+                return;
+            }
+
+            int start = purchasesOffset + 4;
+            int low = 0;
+            int high = buffer.getInt(purchasesOffset);
+            int count = high;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (comparePlayer(start + middle * PURCHASE_RECORD_SIZE, player) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            for (int i = low; i < count; i++) {
+                int position = start + i * PURCHASE_RECORD_SIZE;
+                if (comparePlayer(position, player) != 0) {
+                    break;
+                }
+                consumer.accept(readUuid(position + 16));
+            }
+        }
+
+        private int comparePlayer(int position, UUID player) {
+            int result = Long.compare(buffer.getLong(position), player.getMostSignificantBits());
+            return result != 0 ? result : Long.compare(buffer.getLong(position + 8), player.getLeastSignificantBits());
+        }
+
+        private UUID readUuid(int position) {
+            return new UUID(buffer.getLong(position), buffer.getLong(position + 8));
+        }
+
+        private void readGroupedPurchases(BiConsumer<UUID, UUID> consumer) {
+            int players = buffer.getInt(purchasesOffset);
+            int position = purchasesOffset + 4;
+            for (int i = 0; i < players; i++) {
+                UUID player = readUuid(position);
+                int count = buffer.getInt(position + 16);
+                position += 20;
+                for (int j = 0; j < count; j++, position += 16) {
+                    consumer.accept(player, readUuid(position));
+                }
+            }
+        }
+    }
+
+    /**
+     * Unmaps buffers through sun.misc.Unsafe, the only way to do so before the foreign memory API.
+     * Where it is not available, mappings are released by the garbage collector as before.
+     */
+    private record Unmapper(Object unsafe, Method invokeCleaner) {
+        static Unmapper find() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return new Unmapper(field.get(null), unsafeClass.getMethod("invokeCleaner", ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new Unmapper(null, null);
+            }
+        }
+
+        void unmap(MappedByteBuffer buffer) {
+            if (invokeCleaner == null) {
+                return;
+            }
+            try {
+                invokeCleaner.invoke(unsafe, buffer);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Left to the garbage collector
+            }
+        }
+    }
+}
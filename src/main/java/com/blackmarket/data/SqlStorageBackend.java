@@ -0,0 +1,423 @@
+package com.blackmarket.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Stores the black market in an embedded SQLite database (data.db) using the
+ * driver bundled with the server. Pool items, the active rotation and purchases
+ * live in indexed tables, so recording a purchase is a single-row insert.
+ */
+class SqlStorageBackend implements StorageBackend {
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS bm_pool_items (id CHAR(36) PRIMARY KEY, item BLOB NOT NULL, weight INTEGER NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_pool_costs (item_id CHAR(36) NOT NULL, slot INTEGER NOT NULL, cost BLOB NOT NULL, PRIMARY KEY (item_id, slot))",
+        "CREATE TABLE IF NOT EXISTS bm_active_items (slot INTEGER PRIMARY KEY, item_id CHAR(36) NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_rotation (id INTEGER PRIMARY KEY, last_rotation BIGINT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_staged_items (slot INTEGER PRIMARY KEY, item_id CHAR(36) NOT NULL, rotation BIGINT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS bm_purchases (player CHAR(36) NOT NULL, item_id CHAR(36) NOT NULL, purchased_at BIGINT NOT NULL, PRIMARY KEY (player, item_id))"
+    };
+
+    private final Logger logger;
+    private final File databaseFile;
+    private Connection connection;
+    private PreparedStatement insertPurchase;
+    private PreparedStatement selectPurchases;
+    private Map<UUID, MarketItem> storedPool = Map.of(); // Pool items as last loaded or written, to find changed rows
+
+    SqlStorageBackend(File dataFolder, Logger logger) {
+        this.logger = logger;
+        this.databaseFile = new File(dataFolder, "data.db");
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            try {
+                Class.forName("org.sqlite.JDBC");
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("SQLite driver not found on this server", e);
+            }
+
+            databaseFile.getParentFile().mkdirs();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            insertPurchase = connection.prepareStatement("INSERT OR IGNORE INTO bm_purchases (player, item_id, purchased_at) VALUES (?, ?, ?)");
+            selectPurchases = connection.prepareStatement("SELECT item_id FROM bm_purchases WHERE player = ?");
+        }
+        return connection;
+    }
+
+    @Override
+    public DataSnapshot load() throws IOException {
+        try {
+            Connection connection = connection();
+
+            // Load cost items grouped by pool item
+            Map<String, List<byte[]>> costs = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT item_id, cost FROM bm_pool_costs ORDER BY item_id, slot")) {
+                while (rows.next()) {
+                    costs.computeIfAbsent(rows.getString(1), k -> new ArrayList<>()).add(rows.getBytes(2));
+                }
+            }
+
+            // Load item pool; the stacks are deserialized once all rows are read
+            List<ParallelDecoder.StoredItem> stored = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT id, item, weight FROM bm_pool_items ORDER BY rowid")) {
+                while (rows.next()) {
+                    String key = rows.getString(1);
+                    stored.add(new ParallelDecoder.StoredItem(key, rows.getBytes(2), rows.getInt(3), costs.getOrDefault(key, List.of())));
+                }
+            }
+            List<MarketItem> pool = ParallelDecoder.decodePool(stored, logger);
+
+            // Load active items
+            List<UUID> activeItemIds = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT item_id FROM bm_active_items ORDER BY slot")) {
+                while (rows.next()) {
+                    try {
+                        activeItemIds.add(UUID.fromString(rows.getString(1)));
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid UUID in active items: " + rows.getString(1));
+                    }
+                }
+            }
+
+            // Load last rotation time
+            long lastRotationTime = System.currentTimeMillis();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT last_rotation FROM bm_rotation WHERE id = 1")) {
+                if (rows.next()) {
+                    lastRotationTime = rows.getLong(1);
+                }
+            }
+
+            // Load the staged rotation, if any
+            List<UUID> stagedIds = new ArrayList<>();
+            long stagedTime = 0;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT item_id, rotation FROM bm_staged_items ORDER BY slot")) {
+                while (rows.next()) {
+                    try {
+                        stagedIds.add(UUID.fromString(rows.getString(1)));
+                        stagedTime = rows.getLong(2);
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid UUID in staged items: " + rows.getString(1));
+                    }
+                }
+            }
+            StagedRotation staged = stagedIds.isEmpty() ? null : new StagedRotation(stagedIds, stagedTime);
+
+            storedPool = indexById(pool);
+            return new DataSnapshot(pool, activeItemIds, lastRotationTime, staged);
+        } catch (SQLException e) {
+            throw new IOException("Could not load from database", e);
+        }
+    }
+
+    @Override
+    public Set<UUID> loadPurchases(UUID playerUuid) throws IOException {
+        try {
+            connection();
+            selectPurchases.setString(1, playerUuid.toString());
+            Set<UUID> purchases = new HashSet<>();
+            try (ResultSet rows = selectPurchases.executeQuery()) {
+                while (rows.next()) {
+                    try {
+                        purchases.add(UUID.fromString(rows.getString(1)));
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid item UUID in purchases: " + rows.getString(1));
+                    }
+                }
+            }
+            return purchases;
+        } catch (SQLException e) {
+            throw new IOException("Could not load purchases of " + playerUuid, e);
+        }
+    }
+
+    @Override
+    public void loadAllPurchases(BiConsumer<UUID, UUID> consumer) throws IOException {
+        try (Statement statement = connection().createStatement();
+             ResultSet rows = statement.executeQuery("SELECT player, item_id FROM bm_purchases")) {
+            while (rows.next()) {
+                try {
+                    consumer.accept(UUID.fromString(rows.getString(1)), UUID.fromString(rows.getString(2)));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Invalid UUID in purchases: " + rows.getString(1) + " / " + rows.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not load purchases from database", e);
+        }
+    }
+
+    @Override
+    public void save(DataSnapshot snapshot) throws IOException {
+        if (!snapshot.changed().isEmpty()) {
+            inTransaction("save data", connection -> writeState(connection, snapshot, false));
+            if (snapshot.changed().contains(DataSnapshot.Section.POOL)) {
+                storedPool = indexById(snapshot.pool());
+            }
+        }
+    }
+
+    @Override
+    public boolean recordPurchase(UUID playerUuid, UUID itemId, long timestamp) throws IOException {
+        try {
+            connection();
+            insertPurchase.setString(1, playerUuid.toString());
+            insertPurchase.setString(2, itemId.toString());
+            insertPurchase.setLong(3, timestamp);
+            return insertPurchase.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw new IOException("Could not record purchase", e);
+        }
+    }
+
+    @Override
+    public void clearPurchases() throws IOException {
+        try (Statement statement = connection().createStatement()) {
+            statement.executeUpdate("DELETE FROM bm_purchases");
+        } catch (SQLException e) {
+            throw new IOException("Could not clear purchases", e);
+        }
+    }
+
+    @Override
+    public void importData(DataSnapshot snapshot, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException {
+        long now = System.currentTimeMillis();
+        inTransaction("import data", connection -> {
+            writeState(connection, snapshot, true);
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM bm_purchases");
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO bm_purchases (player, item_id, purchased_at) VALUES (?, ?, ?)")) {
+                for (Map.Entry<UUID, ? extends Collection<UUID>> entry : purchases.entrySet()) {
+                    for (UUID itemId : entry.getValue()) {
+                        insert.setString(1, entry.getKey().toString());
+                        insert.setString(2, itemId.toString());
+                        insert.setLong(3, now);
+                        insert.addBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+        });
+        if (snapshot.changed().contains(DataSnapshot.Section.POOL)) {
+            storedPool = indexById(snapshot.pool());
+        }
+    }
+
+    /**
+     * Replace the changed sections of the pool, active items, rotation time and staged rotation
+     * inside the current transaction. The pool is written row by row unless it is to be replaced.
+     */
+    private void writeState(Connection connection, DataSnapshot snapshot, boolean replacePool) throws SQLException {
+        if (snapshot.changed().contains(DataSnapshot.Section.POOL)) {
+            if (replacePool) {
+                writePool(connection, snapshot.pool());
+            } else {
+                writePoolChanges(connection, snapshot.pool());
+            }
+        }
+        if (snapshot.changed().contains(DataSnapshot.Section.ACTIVE_ITEMS)) {
+            writeActiveItems(connection, snapshot);
+        }
+        if (snapshot.changed().contains(DataSnapshot.Section.ROTATION_TIME)) {
+            try (PreparedStatement updateRotation = connection.prepareStatement("INSERT OR REPLACE INTO bm_rotation (id, last_rotation) VALUES (1, ?)")) {
+                updateRotation.setLong(1, snapshot.lastRotationTime());
+                updateRotation.executeUpdate();
+            }
+        }
+    }
+
+    private void writePool(Connection connection, List<MarketItem> pool) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM bm_pool_costs");
+            statement.executeUpdate("DELETE FROM bm_pool_items");
+        }
+
+        // Items cache their serialized form, so unchanged items are not serialized again
+        try (PreparedStatement insertItem = connection.prepareStatement("INSERT INTO bm_pool_items (id, item, weight) VALUES (?, ?, ?)");
+             PreparedStatement insertCost = connection.prepareStatement("INSERT INTO bm_pool_costs (item_id, slot, cost) VALUES (?, ?, ?)")) {
+            for (MarketItem item : pool) {
+                String id = item.getId().toString();
+                insertItem.setString(1, id);
+                insertItem.setBytes(2, item.serializedItem());
+                insertItem.setInt(3, item.getWeight());
+                insertItem.addBatch();
+
+                int slot = 0;
+                for (byte[] cost : item.serializedCosts()) {
+                    insertCost.setString(1, id);
+                    insertCost.setInt(2, slot++);
+                    insertCost.setBytes(3, cost);
+                    insertCost.addBatch();
+                }
+            }
+            insertItem.executeBatch();
+            insertCost.executeBatch();
+        }
+    }
+
+    /**
+     * Write only the pool rows that differ from the stored pool: removed items are deleted,
+     * new ones inserted and replaced ones updated. Items are immutable, so an unchanged item
+     * is the same instance.
+     */
+    private void writePoolChanges(Connection connection, List<MarketItem> pool) throws SQLException {
+        Set<UUID> ids = new HashSet<>();
+        for (MarketItem item : pool) {
+            ids.add(item.getId());
+        }
+
+        try (PreparedStatement deleteItem = connection.prepareStatement("DELETE FROM bm_pool_items WHERE id = ?");
+             PreparedStatement deleteCosts = connection.prepareStatement("DELETE FROM bm_pool_costs WHERE item_id = ?");
+             PreparedStatement updateItem = connection.prepareStatement("UPDATE bm_pool_items SET item = ?, weight = ? WHERE id = ?");
+             PreparedStatement insertItem = connection.prepareStatement("INSERT INTO bm_pool_items (id, item, weight) VALUES (?, ?, ?)");
+             PreparedStatement insertCost = connection.prepareStatement("INSERT INTO bm_pool_costs (item_id, slot, cost) VALUES (?, ?, ?)")) {
+            for (UUID id : storedPool.keySet()) {
+                if (!ids.contains(id)) {
+                    deleteCosts.setString(1, id.toString());
+                    deleteCosts.executeUpdate();
+                    deleteItem.setString(1, id.toString());
+                    deleteItem.executeUpdate();
+                }
+            }
+
+            // Updates keep the rowid, so the pool keeps its order; new items are appended
+            for (MarketItem item : pool) {
+                MarketItem stored = storedPool.get(item.getId());
+                if (stored == item) {
+                    continue;
+                }
+
+                String id = item.getId().toString();
+                if (stored == null) {
+                    insertItem.setString(1, id);
+                    insertItem.setBytes(2, item.serializedItem());
+                    insertItem.setInt(3, item.getWeight());
+                    insertItem.executeUpdate();
+                } else {
+                    updateItem.setBytes(1, item.serializedItem());
+                    updateItem.setInt(2, item.getWeight());
+                    updateItem.setString(3, id);
+                    updateItem.executeUpdate();
+                    if (stored.viewCostItems() == item.viewCostItems()) {
+                        // A weight change shares the cost list, so the cost rows are still current
+                        continue;
+                    }
+                    deleteCosts.setString(1, id);
+                    deleteCosts.executeUpdate();
+                }
+
+                int slot = 0;
+                for (byte[] cost : item.serializedCosts()) {
+                    insertCost.setString(1, id);
+                    insertCost.setInt(2, slot++);
+                    insertCost.setBytes(3, cost);
+                    insertCost.addBatch();
+                }
+                insertCost.executeBatch();
+            }
+        }
+    }
+
+    private static Map<UUID, MarketItem> indexById(List<MarketItem> pool) {
+        Map<UUID, MarketItem> index = new HashMap<>();
+        for (MarketItem item : pool) {
+            index.put(item.getId(), item);
+        }
+        return index;
+    }
+
+    private void writeActiveItems(Connection connection, DataSnapshot snapshot) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM bm_active_items");
+            statement.executeUpdate("DELETE FROM bm_staged_items");
+        }
+
+        try (PreparedStatement insertActive = connection.prepareStatement("INSERT INTO bm_active_items (slot, item_id) VALUES (?, ?)")) {
+            int slot = 0;
+            for (UUID id : snapshot.activeItemIds()) {
+                insertActive.setInt(1, slot++);
+                insertActive.setString(2, id.toString());
+                insertActive.addBatch();
+            }
+            insertActive.executeBatch();
+        }
+
+        StagedRotation staged = snapshot.stagedRotation();
+        if (staged != null) {
+            try (PreparedStatement insertStaged = connection.prepareStatement("INSERT INTO bm_staged_items (slot, item_id, rotation) VALUES (?, ?, ?)")) {
+                int slot = 0;
+                for (UUID id : staged.itemIds()) {
+                    insertStaged.setInt(1, slot++);
+                    insertStaged.setString(2, id.toString());
+                    insertStaged.setLong(3, staged.rotationTime());
+                    insertStaged.addBatch();
+                }
+                insertStaged.executeBatch();
+            }
+        }
+    }
+
+    private void inTransaction(String action, SqlWork work) throws IOException {
+        try {
+            Connection connection = connection();
+            connection.setAutoCommit(false);
+            try {
+                work.run(connection);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not " + action, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Could not close database", e);
+        } finally {
+            connection = null;
+            insertPurchase = null;
+            selectPurchases = null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run(Connection connection) throws SQLException;
+    }
+}
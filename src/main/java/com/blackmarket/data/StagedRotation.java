@@ -0,0 +1,13 @@
+package com.blackmarket.data;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Items selected ahead of time for the rotation due at the given time
+ */
+public record StagedRotation(List<UUID> itemIds, long rotationTime) {
+    public StagedRotation {
+        itemIds = List.copyOf(itemIds);
+    }
+}
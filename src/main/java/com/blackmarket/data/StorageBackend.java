@@ -0,0 +1,60 @@
+package com.blackmarket.data;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Persistence layer behind {@link DataManager}. The DataManager keeps the live
+ * state in memory and calls a backend only from its writer thread (or during
+ * startup, before the writer is used), so implementations need no locking.
+ */
+interface StorageBackend {
+
+    /**
+     * Name used for this backend in config.yml and the migrate command
+     */
+    String getName();
+
+    /**
+     * Load the stored pool and rotation state
+     */
+    DataSnapshot load() throws IOException;
+
+    /**
+     * Load the items one player bought in the current rotation
+     */
+    Set<UUID> loadPurchases(UUID playerUuid) throws IOException;
+
+    /**
+     * Stream every purchase made in the current rotation as (player, item) pairs
+     */
+    void loadAllPurchases(BiConsumer<UUID, UUID> consumer) throws IOException;
+
+    /**
+     * Replace the stored pool and rotation state. Stored purchases are kept.
+     */
+    void save(DataSnapshot snapshot) throws IOException;
+
+    /**
+     * Persist a single purchase
+     *
+     * @return false if the purchase was already stored, e.g. by another server sharing the storage
+     */
+    boolean recordPurchase(UUID playerUuid, UUID itemId, long timestamp) throws IOException;
+
+    /**
+     * Forget all stored purchases, called when the market rotates
+     */
+    void clearPurchases() throws IOException;
+
+    /**
+     * Replace everything stored with the given data, used when migrating between backends
+     */
+    void importData(DataSnapshot snapshot, Map<UUID, ? extends Collection<UUID>> purchases) throws IOException;
+
+    void close() throws IOException;
+}
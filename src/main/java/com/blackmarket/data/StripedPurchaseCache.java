@@ -0,0 +1,92 @@
+package com.blackmarket.data;
+
+import java.util.*;
+
+/**
+ * A {@link PurchaseCache} split into stripes by player UUID, each with its own lock.
+ * On Folia, purchases of players in different regions run on different threads
+ * and only wait for each other when their UUIDs share a stripe.
+ * The rotation is shared by all stripes and replaced with a single write, so a
+ * reader never sees the slots of one rotation with the epoch of another.
+ */
+class StripedPurchaseCache {
+    private static final int STRIPES = 16; // Power of two
+
+    private final PurchaseCache[] stripes = new PurchaseCache[STRIPES];
+    private volatile PurchaseCache.Rotation rotation = PurchaseCache.Rotation.NONE;
+
+    StripedPurchaseCache(int maxSize, long graceMillis) {
+        int stripeSize = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new PurchaseCache(stripeSize, graceMillis);
+        }
+    }
+
+    private PurchaseCache stripe(UUID playerUuid) {
+        int hash = playerUuid.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Set the items of the current rotation, keeping the purchases made so far, e.g. once the data is loaded
+     */
+    synchronized void setActiveItems(List<UUID> itemIds) {
+        rotation = new PurchaseCache.Rotation(List.copyOf(itemIds), rotation.epoch());
+    }
+
+    /**
+     * Switch to a new rotation and forget every purchase. Entries are not touched; their epoch is now stale.
+     */
+    synchronized void rotate(List<UUID> itemIds) {
+        rotation = new PurchaseCache.Rotation(List.copyOf(itemIds), rotation.epoch() + 1);
+    }
+
+    boolean isLoaded(UUID playerUuid) {
+        return stripe(playerUuid).isLoaded(playerUuid);
+    }
+
+    boolean contains(UUID playerUuid, UUID itemId) {
+        return stripe(playerUuid).contains(playerUuid, itemId, rotation);
+    }
+
+    boolean add(UUID playerUuid, UUID itemId) {
+        return stripe(playerUuid).add(playerUuid, itemId, rotation);
+    }
+
+    void removePurchase(UUID playerUuid, UUID itemId) {
+        stripe(playerUuid).removePurchase(playerUuid, itemId, rotation);
+    }
+
+    /**
+     * Epoch of the current rotation, to pass to {@link #put} once purchases loaded from now on arrive
+     */
+    int epoch() {
+        return rotation.epoch();
+    }
+
+    void put(UUID playerUuid, Collection<UUID> itemIds, int loadedEpoch) {
+        stripe(playerUuid).put(playerUuid, itemIds, loadedEpoch, rotation);
+    }
+
+    void retain(UUID playerUuid) {
+        stripe(playerUuid).retain(playerUuid);
+    }
+
+    void release(UUID playerUuid, long now) {
+        stripe(playerUuid).release(playerUuid, now);
+    }
+
+    void evictExpired(long now) {
+        for (PurchaseCache stripe : stripes) {
+            stripe.evictExpired(now);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (PurchaseCache stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,105 @@
+package com.blackmarket.data;
+
+import java.util.*;
+
+/**
+ * Weighted random sampling without replacement over a fixed set of items.
+ * Weights are kept in a Fenwick tree, so each pick is a prefix-sum descent in
+ * O(log n) and a sample of k items costs O(k log n). The sampler is built once
+ * per pool change and reused across rotations.
+ */
+class WeightedSampler {
+    private final UUID[] ids;
+    private final long[] weights;
+    private final long[] tree; // Fenwick tree over weights, 1-based
+    private final int highestBit;
+    private long totalWeight;
+
+    WeightedSampler(Collection<MarketItem> items) {
+        int size = items.size();
+        this.ids = new UUID[size];
+        this.weights = new long[size];
+        this.tree = new long[size + 1];
+
+        int i = 0;
+        for (MarketItem item : items) {
+            ids[i] = item.getId();
+            weights[i] = Math.max(0, item.getWeight());
+            tree[i + 1] = weights[i];
+            totalWeight += weights[i];
+            i++;
+        }
+
+        // Build in O(n) by pushing each node into its parent
+        for (int node = 1; node <= size; node++) {
+            int parent = node + (node & -node);
+            if (parent <= size) {
+                tree[parent] += tree[node];
+            }
+        }
+
+        this.highestBit = size == 0 ? 0 : Integer.highestOneBit(size);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * Pick up to count distinct items, each with probability proportional to its weight
+     * among the items not picked yet. Once only zero-weight items are left they are picked uniformly.
+     */
+    synchronized List<UUID> sample(int count, Random random) {
+        count = Math.min(count, ids.length);
+        List<UUID> selected = new ArrayList<>(count);
+        int[] picked = new int[count];
+        boolean[] taken = new boolean[ids.length];
+
+        for (int n = 0; n < count; n++) {
+            int index;
+            if (totalWeight > 0) {
+                index = find(random.nextLong(totalWeight));
+                add(index, -weights[index]);
+            } else {
+                // Rejection sampling; at most count items are taken, so this ends quickly for small samples
+                do {
+                    index = random.nextInt(ids.length);
+                } while (taken[index]);
+            }
+
+            taken[index] = true;
+            picked[n] = index;
+            selected.add(ids[index]);
+        }
+
+        // Put the picked weights back for the next rotation
+        for (int index : picked) {
+            if (weights[index] > 0) {
+                add(index, weights[index]);
+            }
+        }
+        return selected;
+    }
+
+    private void add(int index, long delta) {
+        totalWeight += delta;
+        for (int node = index + 1; node < tree.length; node += node & -node) {
+            tree[node] += delta;
+        }
+    }
+
+    /**
+     * Find the item whose cumulative weight range contains target, with 0 <= target < totalWeight
+     */
+    private int find(long target) {
+        int position = 0;
+        for (int step = highestBit; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] <= target) {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        return position; // 1-based position of the last smaller prefix equals the 0-based index
+    }
+}
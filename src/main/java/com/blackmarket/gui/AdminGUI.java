@@ -3,7 +3,6 @@ package com.blackmarket.gui;
 import com.blackmarket.BlackMarket;
 import com.blackmarket.data.DataManager;
 import com.blackmarket.data.MarketItem;
-import com.blackmarket.data.RotationManager;
 import com.blackmarket.utils.ItemUtils;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextDecoration;
@@ -11,80 +10,86 @@ import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.*;
 
 /**
- * Admin GUI for managing the black market
+ * Admin GUI for managing the black market.
+ * Each open window remembers the market items it rendered, so after a pool edit
+ * only the slots whose item changed are rendered and sent again.
  */
 public class AdminGUI {
     private final BlackMarket plugin;
     private final DataManager dataManager;
-    private final RotationManager rotationManager;
     private static final String INVENTORY_TITLE = "Black Market Admin";
+    private static final int PAGE_SIZE = 45; // Five rows of pool items above the control row
+    private static final SlotAction[] SLOT_ACTIONS = new SlotAction[54];
+
+    static {
+        Arrays.fill(SLOT_ACTIONS, SlotAction.NONE);
+        Arrays.fill(SLOT_ACTIONS, 0, PAGE_SIZE, SlotAction.POOL_ITEM);
+        SLOT_ACTIONS[45] = SlotAction.PREVIOUS_PAGE;
+        SLOT_ACTIONS[47] = SlotAction.RELOAD_CONFIG;
+        SLOT_ACTIONS[49] = SlotAction.FORCE_ROTATION;
+        SLOT_ACTIONS[51] = SlotAction.NEXT_PAGE;
+        SLOT_ACTIONS[53] = SlotAction.ADD_ITEM;
+    }
+
+    /**
+     * What a click on a slot of the admin inventory does
+     */
+    public enum SlotAction {
+        NONE,
+        POOL_ITEM,
+        RELOAD_CONFIG,
+        FORCE_ROTATION,
+        PREVIOUS_PAGE,
+        NEXT_PAGE,
+        ADD_ITEM
+    }
 
-    public AdminGUI(BlackMarket plugin, DataManager dataManager, RotationManager rotationManager) {
+    public AdminGUI(BlackMarket plugin, DataManager dataManager) {
         this.plugin = plugin;
         this.dataManager = dataManager;
-        this.rotationManager = rotationManager;
     }
 
     public void open(Player player) {
-        Inventory inventory = Bukkit.createInventory(null, 54, Component.text(INVENTORY_TITLE));
-
-        // Display all items in the pool
-        Map<UUID, MarketItem> pool = dataManager.getItemPool();
-        List<UUID> poolIds = new ArrayList<>(pool.keySet());
-
-        int slot = 0;
-        for (int i = 0; i < Math.min(45, poolIds.size()); i++) {
-            UUID id = poolIds.get(i);
-            MarketItem marketItem = pool.get(id);
+        open(player, 0);
+    }
 
-            if (marketItem != null) {
-                ItemStack displayItem = marketItem.getItemStack().clone();
-                ItemMeta meta = displayItem.getItemMeta();
+    /**
+     * Open the page that shows the given pool item, e.g. when returning from its cost editor
+     */
+    public void openPageOf(Player player, UUID itemId) {
+        open(player, Math.max(0, dataManager.getPoolIndex(itemId)) / PAGE_SIZE);
+    }
 
-                if (meta != null) {
-                    List<Component> lore = meta.hasLore() ? new ArrayList<>(meta.lore()) : new ArrayList<>();
-                    lore.add(Component.empty());
-                    lore.add(ItemUtils.translateColorCodes("&eWeight: &6" + marketItem.getWeight())
-                        .decoration(TextDecoration.ITALIC, false));
-                    lore.add(Component.empty());
-                    lore.add(ItemUtils.translateColorCodes("&6Cost Items:")
-                        .decoration(TextDecoration.ITALIC, false));
+    /**
+     * Open a page of the pool; only the items on that page are rendered
+     */
+    public void open(Player player, int page) {
+        int pageCount = getPageCount();
+        page = Math.max(0, Math.min(page, pageCount - 1));
 
-                    if (marketItem.getCostItems().isEmpty()) {
-                        lore.add(ItemUtils.translateColorCodes("&cNo cost set!")
-                            .decoration(TextDecoration.ITALIC, false));
-                    } else {
-                        for (ItemStack cost : marketItem.getCostItems()) {
-                            String costName = cost.getType().toString().toLowerCase().replace("_", " ");
-                            if (cost.hasItemMeta() && cost.getItemMeta().hasDisplayName()) {
-                                costName = cost.getItemMeta().displayName().toString();
-                            }
-                            lore.add(ItemUtils.translateColorCodes("&7- " + cost.getAmount() + "x " + costName)
-                                .decoration(TextDecoration.ITALIC, false));
-                        }
-                    }
-
-                    lore.add(Component.empty());
-                    lore.add(ItemUtils.translateColorCodes("&eLeft-click: &7Edit costs")
-                        .decoration(TextDecoration.ITALIC, false));
-                    lore.add(ItemUtils.translateColorCodes("&eRight-click: &7Remove from pool")
-                        .decoration(TextDecoration.ITALIC, false));
+        Holder holder = new Holder(page, pageCount);
+        Inventory inventory = Bukkit.createInventory(holder, 54, Component.text(INVENTORY_TITLE + " (" + (page + 1) + "/" + pageCount + ")"));
+        holder.inventory = inventory;
 
-                    meta.lore(lore);
-                    displayItem.setItemMeta(meta);
-                }
+        // Display the pool items of this page
+        renderPoolItems(holder);
 
-                inventory.setItem(slot++, displayItem);
-            }
+        // Add control buttons in the bottom row
+        // Page buttons (slots 45 and 51), only where there is a page to go to
+        if (page > 0) {
+            inventory.setItem(45, ItemUtils.createItem(Material.ARROW, "&ePrevious Page", "&7Go to page " + page));
+        }
+        if (page < pageCount - 1) {
+            inventory.setItem(51, ItemUtils.createItem(Material.ARROW, "&eNext Page", "&7Go to page " + (page + 2)));
         }
 
-        // Add control buttons in the bottom row
         // Reload config button (slot 47)
         ItemStack reloadButton = ItemUtils.createItem(
             Material.COMMAND_BLOCK,
@@ -114,7 +119,117 @@ public class AdminGUI {
         player.openInventory(inventory);
     }
 
-    public static String getTitle() {
-        return INVENTORY_TITLE;
+    /**
+     * Update the player's open admin window after the pool changed. Only changed slots
+     * are rendered again; the window is only reopened when its page count, and so its title, changed.
+     */
+    public void refresh(Player player, Holder holder) {
+        if (player.getOpenInventory().getTopInventory().getHolder(false) != holder) {
+            return; // Closed or replaced in the meantime
+        }
+
+        if (getPageCount() != holder.pageCount) {
+            open(player, holder.page);
+            return;
+        }
+        renderPoolItems(holder);
+    }
+
+    private int getPageCount() {
+        return Math.max(1, (dataManager.getPoolSize() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    /**
+     * Render the item slots that show a different market item than last time.
+     * Market items are immutable, so an edited item is a new instance.
+     */
+    private void renderPoolItems(Holder holder) {
+        List<MarketItem> items = dataManager.getPoolPage(holder.page * PAGE_SIZE, PAGE_SIZE);
+        for (int slot = 0; slot < PAGE_SIZE; slot++) {
+            MarketItem marketItem = slot < items.size() ? items.get(slot) : null;
+            if (holder.rendered[slot] != marketItem) {
+                holder.inventory.setItem(slot, marketItem == null ? null : render(marketItem));
+                holder.rendered[slot] = marketItem;
+            }
+        }
+    }
+
+    /**
+     * The pool item with its weight, cost and controls added to the lore
+     */
+    private ItemStack render(MarketItem marketItem) {
+        ItemStack displayItem = marketItem.viewItemStack().clone();
+        ItemMeta meta = displayItem.getItemMeta();
+
+        if (meta != null) {
+            List<Component> lore = meta.hasLore() ? new ArrayList<>(meta.lore()) : new ArrayList<>();
+            lore.add(Component.empty());
+            lore.add(ItemUtils.translateColorCodes("&eWeight: &6" + marketItem.getWeight())
+                .decoration(TextDecoration.ITALIC, false));
+            lore.add(Component.empty());
+            lore.add(ItemUtils.translateColorCodes("&6Cost Items:")
+                .decoration(TextDecoration.ITALIC, false));
+
+            if (marketItem.viewCostItems().isEmpty()) {
+                lore.add(ItemUtils.translateColorCodes("&cNo cost set!")
+                    .decoration(TextDecoration.ITALIC, false));
+            } else {
+                for (ItemStack cost : marketItem.viewCostItems()) {
+                    String costName = ItemUtils.getItemName(cost);
+                    lore.add(ItemUtils.translateColorCodes("&7- " + cost.getAmount() + "x " + costName)
+                        .decoration(TextDecoration.ITALIC, false));
+                }
+            }
+
+            lore.add(Component.empty());
+            lore.add(ItemUtils.translateColorCodes("&eLeft-click: &7Edit costs")
+                .decoration(TextDecoration.ITALIC, false));
+            lore.add(ItemUtils.translateColorCodes("&eRight-click: &7Remove from pool")
+                .decoration(TextDecoration.ITALIC, false));
+
+            meta.lore(lore);
+            displayItem.setItemMeta(meta);
+        }
+
+        return displayItem;
+    }
+
+    /**
+     * Action of a raw slot in the admin inventory; slots of the player's own inventory have none
+     */
+    public static SlotAction getSlotAction(int rawSlot) {
+        return rawSlot >= 0 && rawSlot < SLOT_ACTIONS.length ? SLOT_ACTIONS[rawSlot] : SlotAction.NONE;
+    }
+
+    /**
+     * Marks an admin inventory and remembers which pool items its page shows
+     */
+    public static final class Holder implements InventoryHolder {
+        private final int page;
+        private final int pageCount;
+        private final MarketItem[] rendered = new MarketItem[PAGE_SIZE]; // Market item last rendered per item slot
+        private Inventory inventory;
+
+        private Holder(int page, int pageCount) {
+            this.page = page;
+            this.pageCount = pageCount;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * Id of the pool item shown in a raw slot, or null if the slot shows none
+         */
+        public UUID getItemId(int rawSlot) {
+            MarketItem marketItem = rawSlot >= 0 && rawSlot < rendered.length ? rendered[rawSlot] : null;
+            return marketItem != null ? marketItem.getId() : null;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return inventory;
+        }
     }
 }
@@ -4,16 +4,18 @@ import com.blackmarket.BlackMarket;
 import com.blackmarket.data.DataManager;
 import com.blackmarket.data.MarketItem;
 import com.blackmarket.utils.ItemUtils;
+import com.blackmarket.utils.MessageCatalog.Message;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextDecoration;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,6 +27,28 @@ public class CostEditorGUI {
     private final DataManager dataManager;
     private final UUID itemId;
     private static final String INVENTORY_TITLE_PREFIX = "Edit Cost: ";
+    private static final SlotAction[] SLOT_ACTIONS = new SlotAction[54];
+
+    static {
+        Arrays.fill(SLOT_ACTIONS, SlotAction.NONE);
+        Arrays.fill(SLOT_ACTIONS, 19, 49, SlotAction.COST_SLOT);
+        SLOT_ACTIONS[49] = SlotAction.SAVE;
+        SLOT_ACTIONS[50] = SlotAction.INCREASE_WEIGHT;
+        SLOT_ACTIONS[51] = SlotAction.DECREASE_WEIGHT;
+        SLOT_ACTIONS[53] = SlotAction.CANCEL;
+    }
+
+    /**
+     * What a click on a slot of the cost editor does
+     */
+    public enum SlotAction {
+        NONE,
+        COST_SLOT, // Working area where cost items are placed freely
+        SAVE,
+        INCREASE_WEIGHT,
+        DECREASE_WEIGHT,
+        CANCEL
+    }
 
     public CostEditorGUI(BlackMarket plugin, DataManager dataManager, UUID itemId) {
         this.plugin = plugin;
@@ -35,15 +59,17 @@ public class CostEditorGUI {
     public void open(Player player) {
         MarketItem marketItem = dataManager.getMarketItem(itemId);
         if (marketItem == null) {
-            player.sendMessage(ItemUtils.translateColorCodes("&cItem not found!"));
+            player.sendMessage(plugin.getMessages().get(Message.ITEM_NOT_FOUND));
             return;
         }
 
         String title = INVENTORY_TITLE_PREFIX + itemId.toString().substring(0, 8);
-        Inventory inventory = Bukkit.createInventory(null, 54, Component.text(title));
+        Holder holder = new Holder(itemId);
+        Inventory inventory = Bukkit.createInventory(holder, 54, Component.text(title));
+        holder.inventory = inventory;
 
         // Display current cost items in top row
-        List<ItemStack> currentCosts = marketItem.getCostItems();
+        List<ItemStack> currentCosts = marketItem.viewCostItems();
         for (int i = 0; i < Math.min(9, currentCosts.size()); i++) {
             inventory.setItem(i, currentCosts.get(i).clone());
         }
@@ -73,10 +99,28 @@ public class CostEditorGUI {
         inventory.setItem(49, saveButton);
 
         // Add weight adjustment buttons
+        showWeight(inventory, marketItem.getWeight());
+
+        // Add cancel button
+        ItemStack cancelButton = ItemUtils.createItem(
+            Material.BARRIER,
+            "&cCancel",
+            "&7Return without saving"
+        );
+        inventory.setItem(53, cancelButton);
+
+        player.openInventory(inventory);
+    }
+
+    /**
+     * Show a weight on the weight buttons. Only these two slots change, so a weight
+     * change updates the open editor in place and keeps the items in the working area.
+     */
+    public static void showWeight(Inventory inventory, int weight) {
         ItemStack increaseWeight = ItemUtils.createItem(
             Material.LIME_DYE,
             "&aIncrease Weight",
-            "&7Current: &6" + marketItem.getWeight(),
+            "&7Current: &6" + weight,
             "&7Click to increase by 1"
         );
         inventory.setItem(50, increaseWeight);
@@ -84,31 +128,37 @@ public class CostEditorGUI {
         ItemStack decreaseWeight = ItemUtils.createItem(
             Material.RED_DYE,
             "&cDecrease Weight",
-            "&7Current: &6" + marketItem.getWeight(),
+            "&7Current: &6" + weight,
             "&7Click to decrease by 1"
         );
         inventory.setItem(51, decreaseWeight);
-
-        // Add cancel button
-        ItemStack cancelButton = ItemUtils.createItem(
-            Material.BARRIER,
-            "&cCancel",
-            "&7Return without saving"
-        );
-        inventory.setItem(53, cancelButton);
-
-        player.openInventory(inventory);
     }
 
-    public static boolean isCostEditorGUI(String title) {
-        return title != null && title.startsWith(INVENTORY_TITLE_PREFIX);
+    /**
+     * Action of a raw slot in the cost editor; slots of the player's own inventory have none
+     */
+    public static SlotAction getSlotAction(int rawSlot) {
+        return rawSlot >= 0 && rawSlot < SLOT_ACTIONS.length ? SLOT_ACTIONS[rawSlot] : SlotAction.NONE;
     }
 
-    public static String getTitlePrefix() {
-        return INVENTORY_TITLE_PREFIX;
-    }
+    /**
+     * Marks a cost editor inventory and remembers the item being edited
+     */
+    public static final class Holder implements InventoryHolder {
+        private final UUID itemId;
+        private Inventory inventory;
+
+        private Holder(UUID itemId) {
+            this.itemId = itemId;
+        }
 
-    public UUID getItemId() {
-        return itemId;
+        public UUID getItemId() {
+            return itemId;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return inventory;
+        }
     }
 }
@@ -3,19 +3,17 @@ package com.blackmarket.gui;
 import com.blackmarket.BlackMarket;
 import com.blackmarket.data.DataManager;
 import com.blackmarket.data.MarketItem;
-import com.blackmarket.data.RotationManager;
-import com.blackmarket.utils.ItemUtils;
+import com.blackmarket.utils.MetricsRegistry.Metric;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.format.TextDecoration;
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Player shop GUI showing the current active items
@@ -23,95 +21,129 @@ import java.util.List;
 public class PlayerShopGUI {
     private final BlackMarket plugin;
     private final DataManager dataManager;
-    private final RotationManager rotationManager;
     private static final String INVENTORY_TITLE = "Black Market";
+    private static final int[] CLASSIC_SLOTS = {11, 13, 15};
+    private static final int MAX_ITEMS = 45; // Five item rows plus the timer row
 
-    public PlayerShopGUI(BlackMarket plugin, DataManager dataManager, RotationManager rotationManager) {
+    public PlayerShopGUI(BlackMarket plugin, DataManager dataManager) {
         this.plugin = plugin;
         this.dataManager = dataManager;
-        this.rotationManager = rotationManager;
     }
 
     public void open(Player player) {
-        Inventory inventory = Bukkit.createInventory(null, 27, Component.text(INVENTORY_TITLE));
-
-        List<MarketItem> activeItems = dataManager.getActiveItems();
-
-        // Place active items in slots 11, 13, 15
-        int[] slots = {11, 13, 15};
-        for (int i = 0; i < Math.min(activeItems.size(), 3); i++) {
-            MarketItem marketItem = activeItems.get(i);
-            ItemStack displayItem;
-
-            boolean purchased = dataManager.hasPlayerPurchased(player.getUniqueId(), marketItem.getId());
-
-            if (purchased) {
-                // Show as sold out
-                displayItem = ItemUtils.createItem(
-                    Material.BARRIER,
-                    plugin.getConfig().getString("messages.sold-out", "&cSOLD OUT"),
-                    "&7You already purchased this item"
-                );
-            } else {
-                displayItem = marketItem.getItemStack().clone();
-                ItemMeta meta = displayItem.getItemMeta();
-
-                if (meta != null) {
-                    // Add cost information to lore
-                    List<Component> lore = meta.hasLore() ? new ArrayList<>(meta.lore()) : new ArrayList<>();
-                    lore.add(Component.empty());
-                    lore.add(ItemUtils.translateColorCodes("&6Cost:").decoration(TextDecoration.ITALIC, false));
-
-                    for (ItemStack cost : marketItem.getCostItems()) {
-                        String costName = cost.getType().toString().toLowerCase().replace("_", " ");
-                        if (cost.hasItemMeta() && cost.getItemMeta().hasDisplayName()) {
-                            costName = cost.getItemMeta().displayName().toString();
-                        }
-                        lore.add(ItemUtils.translateColorCodes("&7- " + cost.getAmount() + "x " + costName)
-                            .decoration(TextDecoration.ITALIC, false));
-                    }
-
-                    meta.lore(lore);
-                    displayItem.setItemMeta(meta);
-                }
-            }
-
-            inventory.setItem(slots[i], displayItem);
+        long start = System.nanoTime();
+        ShopRenderCache.Render render = plugin.getShopRenderCache().getRender();
+        List<MarketItem> activeItems = render.getActiveItems();
+        int[] slots = getItemSlots(activeItems.size());
+
+        // Reuse the player's inventory for the whole rotation
+        Inventory inventory = render.getInventory(player.getUniqueId());
+        if (inventory == null) {
+            ItemStack[] template = render.getTemplate();
+            Holder holder = new Holder(render.getVersion(), slots, template.length);
+            inventory = Bukkit.createInventory(holder, template.length, Component.text(INVENTORY_TITLE));
+            holder.inventory = inventory;
+            inventory.setContents(template);
+            render.putInventory(player.getUniqueId(), inventory);
         }
 
-        // Add timer item in slot 22
-        long timeRemaining = rotationManager.getTimeUntilNextRotation();
-        String timeString = ItemUtils.formatTimeRemaining(timeRemaining);
-        String timeMessage = plugin.getConfig().getString("messages.time-remaining", "&eTime until next rotation: &6{time}");
-        timeMessage = timeMessage.replace("{time}", timeString);
-
-        ItemStack timerItem = ItemUtils.createItem(
-            Material.CLOCK,
-            "&eRotation Timer",
-            timeMessage,
-            "&7Items rotate every " + plugin.getConfig().getLong("rotation-interval-hours", 24) + " hours"
-        );
-        inventory.setItem(22, timerItem);
-
-        // Fill empty slots with glass panes
-        ItemStack filler = ItemUtils.createItem(Material.GRAY_STAINED_GLASS_PANE, " ");
-        for (int i = 0; i < inventory.getSize(); i++) {
-            if (inventory.getItem(i) == null) {
-                inventory.setItem(i, filler);
-            }
+        // Patch only the player-specific slots; the inventory copies the cached stacks.
+        // Purchases that are still loading show as for sale until the load patches them in.
+        CompletableFuture<Void> purchasesLoaded = dataManager.whenPurchasesLoaded(player.getUniqueId());
+        patchPurchases(player, inventory, render, slots);
+        if (!purchasesLoaded.isDone()) {
+            Inventory shop = inventory;
+            purchasesLoaded.thenRun(() -> player.getScheduler().run(plugin,
+                task -> patchPurchases(player, shop, render, slots), null));
         }
 
+        // Add timer item in the middle of the bottom row; the shop timer keeps it ticking while open
+        int timerSlot = getTimerSlot(activeItems.size());
+        ItemStack timerItem = plugin.getShopTimer().getTimerItem();
+        inventory.setItem(timerSlot, timerItem);
+
+        // Register after opening, since opening closes the player's previous shop window
         player.openInventory(inventory);
+        plugin.getShopTimer().addViewer(player, inventory, timerSlot, timerItem);
+        plugin.getMetrics().record(Metric.SHOP_OPEN, start);
+    }
+
+    /**
+     * Show each active item as sold out or for sale, depending on whether the player bought it
+     */
+    private void patchPurchases(Player player, Inventory inventory, ShopRenderCache.Render render, int[] slots) {
+        List<MarketItem> activeItems = render.getActiveItems();
+        for (int i = 0; i < slots.length; i++) {
+            boolean purchased = dataManager.hasPlayerPurchased(player.getUniqueId(), activeItems.get(i).getId());
+            inventory.setItem(slots[i], purchased ? render.getSoldOutItem() : render.getDisplayItem(i));
+        }
     }
 
-    public static boolean isPlayerShopGUI(Inventory inventory) {
-        return inventory.getHolder() == null && 
-               Component.text(INVENTORY_TITLE).equals(inventory.getViewers().isEmpty() ? 
-               Component.text(INVENTORY_TITLE) : 
-               ((org.bukkit.inventory.InventoryView) ((Player) inventory.getViewers().get(0)).getOpenInventory()).title());
+    /**
+     * Inventory slots of the active items. Up to three items use the classic
+     * 11/13/15 layout; larger rotations fill whole rows above the timer row.
+     */
+    public static int[] getItemSlots(int itemCount) {
+        if (itemCount <= 3) {
+            return Arrays.copyOf(CLASSIC_SLOTS, itemCount);
+        }
+
+        int[] slots = new int[Math.min(itemCount, MAX_ITEMS)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = i;
+        }
+        return slots;
     }
 
-    public static String getTitle() {
-        return INVENTORY_TITLE;
+    static int getInventorySize(int itemCount) {
+        if (itemCount <= 3) {
+            return 27;
+        }
+        // One row for the timer below the item rows
+        return ((Math.min(itemCount, MAX_ITEMS) + 8) / 9 + 1) * 9;
+    }
+
+    /**
+     * Slot of the rotation timer, in the middle of the bottom row
+     */
+    static int getTimerSlot(int itemCount) {
+        return getInventorySize(itemCount) - 5;
+    }
+
+    /**
+     * Marks a player shop inventory and maps its slots to active item indexes
+     */
+    public static final class Holder implements InventoryHolder {
+        private final int version;
+        private final int[] itemIndexBySlot;
+        private Inventory inventory;
+
+        private Holder(int version, int[] itemSlots, int size) {
+            this.version = version;
+            this.itemIndexBySlot = new int[size];
+            Arrays.fill(itemIndexBySlot, -1);
+            for (int i = 0; i < itemSlots.length; i++) {
+                itemIndexBySlot[itemSlots[i]] = i;
+            }
+        }
+
+        /**
+         * Display version of the render this inventory was created from
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Index of the active item shown in a raw slot, or -1 if the slot shows no item
+         */
+        public int getItemIndex(int rawSlot) {
+            return rawSlot >= 0 && rawSlot < itemIndexBySlot.length ? itemIndexBySlot[rawSlot] : -1;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return inventory;
+        }
     }
 }
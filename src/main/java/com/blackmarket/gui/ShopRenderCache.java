@@ -0,0 +1,222 @@
+package com.blackmarket.gui;
+
+import com.blackmarket.BlackMarket;
+import com.blackmarket.data.DataManager;
+import com.blackmarket.data.MarketItem;
+import com.blackmarket.utils.ItemUtils;
+import com.blackmarket.utils.MessageCatalog.Message;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.TextDecoration;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Display items of the player shop, rendered once per rotation and per edit of an item on sale.
+ * The cache is rebuilt whenever the DataManager's display version changes.
+ * Inventories copy the stacks they are given, so the cached stacks are shared between opens.
+ * Each render also keeps an inventory template and each player's shop inventory for its rotation.
+ * Renders are immutable apart from the inventory map, so any region thread can use them.
+ * The next rotation's render can be prepared ahead of time and is taken over once its
+ * items become active.
+ */
+public class ShopRenderCache {
+    private final BlackMarket plugin;
+    private final DataManager dataManager;
+    private volatile Render current; // Null until first used and after invalidation
+    private volatile Render prepared; // Render of the staged rotation, until it becomes active
+
+    public ShopRenderCache(BlackMarket plugin, DataManager dataManager) {
+        this.plugin = plugin;
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * The render of the current display version, built on first use
+     */
+    public Render getRender() {
+        Render render = current;
+        int version = dataManager.getDisplayVersion();
+        if (render != null && render.version == version) {
+            return render;
+        }
+        return rebuild(version);
+    }
+
+    /**
+     * Drop a player's shop inventory, e.g. when they quit
+     */
+    public void forgetPlayer(UUID playerUuid) {
+        Render render = current;
+        if (render != null) {
+            render.inventories.remove(playerUuid);
+        }
+    }
+
+    /**
+     * Drop everything so the next access renders again, e.g. after the config changed
+     */
+    public void invalidate() {
+        current = null;
+        prepared = null;
+    }
+
+    /**
+     * Render the items of an upcoming rotation now, so switching to it needs no rendering.
+     * Safe to call off the main thread.
+     */
+    public void prepare(List<MarketItem> activeItems) {
+        prepared = build(-1, List.copyOf(activeItems));
+    }
+
+    private synchronized Render rebuild(int version) {
+        // Another thread may have rebuilt while this one waited
+        Render render = current;
+        if (render != null && render.version == version) {
+            return render;
+        }
+
+        List<MarketItem> activeItems = List.copyOf(dataManager.getActiveItems());
+        // Market items are replaced on every edit, so equal lists mean nothing changed since preparing
+        Render next = prepared;
+        if (next != null && next.activeItems.equals(activeItems)) {
+            prepared = null;
+            render = next.withVersion(version);
+        } else {
+            render = build(version, activeItems);
+        }
+        current = render;
+        return render;
+    }
+
+    private Render build(int version, List<MarketItem> activeItems) {
+        List<ItemStack> displayItems = new ArrayList<>(activeItems.size());
+        for (MarketItem marketItem : activeItems) {
+            displayItems.add(render(marketItem));
+        }
+
+        ItemStack soldOutItem = ItemUtils.createItem(
+            Material.BARRIER,
+            plugin.getMessages().get(Message.SOLD_OUT),
+            plugin.getMessages().get(Message.SOLD_OUT_LORE)
+        );
+        ItemStack fillerItem = ItemUtils.createItem(Material.GRAY_STAINED_GLASS_PANE, " ");
+
+        // Inventories of the previous rotation may have a different layout, so each render starts without any
+        return new Render(version, activeItems, List.copyOf(displayItems), soldOutItem,
+            buildTemplate(displayItems, fillerItem));
+    }
+
+    private ItemStack[] buildTemplate(List<ItemStack> displayItems, ItemStack fillerItem) {
+        int itemCount = displayItems.size();
+        ItemStack[] contents = new ItemStack[PlayerShopGUI.getInventorySize(itemCount)];
+        Arrays.fill(contents, fillerItem);
+
+        int[] slots = PlayerShopGUI.getItemSlots(itemCount);
+        for (int i = 0; i < slots.length; i++) {
+            contents[slots[i]] = displayItems.get(i);
+        }
+
+        // Patched with the remaining time on every open
+        contents[PlayerShopGUI.getTimerSlot(itemCount)] = ItemUtils.createItem(Material.CLOCK, plugin.getMessages().get(Message.TIMER_NAME));
+        return contents;
+    }
+
+    /**
+     * The market item with its cost added to the lore
+     */
+    private ItemStack render(MarketItem marketItem) {
+        ItemStack displayItem = marketItem.viewItemStack().clone();
+        ItemMeta meta = displayItem.getItemMeta();
+
+        if (meta != null) {
+            // Add cost information to lore
+            List<Component> lore = meta.hasLore() ? new ArrayList<>(meta.lore()) : new ArrayList<>();
+            lore.add(Component.empty());
+            lore.add(ItemUtils.translateColorCodes("&6Cost:").decoration(TextDecoration.ITALIC, false));
+
+            for (ItemStack cost : marketItem.viewCostItems()) {
+                String costName = ItemUtils.getItemName(cost);
+                lore.add(ItemUtils.translateColorCodes("&7- " + cost.getAmount() + "x " + costName)
+                    .decoration(TextDecoration.ITALIC, false));
+            }
+
+            meta.lore(lore);
+            displayItem.setItemMeta(meta);
+        }
+
+        return displayItem;
+    }
+
+    /**
+     * Rendered shop of one display version; the stacks must not be modified
+     */
+    public static final class Render {
+        private final int version;
+        private final List<MarketItem> activeItems;
+        private final List<ItemStack> displayItems;
+        private final ItemStack soldOutItem;
+        private final ItemStack[] template;
+        private final Map<UUID, Inventory> inventories = new ConcurrentHashMap<>(); // Player UUID -> shop inventory
+
+        private Render(int version, List<MarketItem> activeItems, List<ItemStack> displayItems,
+                       ItemStack soldOutItem, ItemStack[] template) {
+            this.version = version;
+            this.activeItems = activeItems;
+            this.displayItems = displayItems;
+            this.soldOutItem = soldOutItem;
+            this.template = template;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * The same rendered items under another display version, without any inventories
+         */
+        private Render withVersion(int version) {
+            return new Render(version, activeItems, displayItems, soldOutItem, template);
+        }
+
+        /**
+         * Active items in shop order
+         */
+        public List<MarketItem> getActiveItems() {
+            return activeItems;
+        }
+
+        /**
+         * Decorated display item of the active item at the given index
+         */
+        public ItemStack getDisplayItem(int index) {
+            return displayItems.get(index);
+        }
+
+        public ItemStack getSoldOutItem() {
+            return soldOutItem;
+        }
+
+        /**
+         * Shop contents with fillers, a timer placeholder and every item unsold
+         */
+        public ItemStack[] getTemplate() {
+            return template;
+        }
+
+        /**
+         * The player's shop inventory of this render, or null if it was not created yet
+         */
+        public Inventory getInventory(UUID playerUuid) {
+            return inventories.get(playerUuid);
+        }
+
+        public void putInventory(UUID playerUuid, Inventory inventory) {
+            inventories.put(playerUuid, inventory);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.blackmarket.gui;
+
+import com.blackmarket.BlackMarket;
+import com.blackmarket.data.RotationManager;
+import com.blackmarket.utils.ItemUtils;
+import com.blackmarket.utils.MessageCatalog;
+import com.blackmarket.utils.MessageCatalog.Message;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live rotation countdown of open shop windows.
+ * One shared task checks the remaining time once per second and builds a new timer
+ * item only when its text changes; that item is then patched into the timer slot of
+ * every open shop. Shops are registered while open, so the cost follows open windows
+ * rather than online players.
+ */
+public class ShopTimer {
+    private final BlackMarket plugin;
+    private final Map<UUID, Viewer> viewers = new ConcurrentHashMap<>(); // Player UUID -> open shop
+    private volatile TimerItem current; // Null until first used and after invalidation
+    private ScheduledTask task;
+
+    public ShopTimer(BlackMarket plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        task = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, scheduled -> tick(), 20, 20);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        viewers.clear();
+    }
+
+    /**
+     * Keep the timer of a shop the player just opened up to date, starting from the timer item it shows
+     */
+    public void addViewer(Player player, Inventory inventory, int timerSlot, ItemStack shown) {
+        viewers.put(player.getUniqueId(), new Viewer(player, inventory, timerSlot, shown));
+    }
+
+    /**
+     * Stop updating a shop once it is closed; a newer shop of the same player stays registered
+     */
+    public void removeViewer(UUID playerUuid, Inventory inventory) {
+        viewers.computeIfPresent(playerUuid, (uuid, viewer) -> viewer.inventory == inventory ? null : viewer);
+    }
+
+    /**
+     * Drop the cached item so the next tick renders it again, e.g. after the config changed
+     */
+    public void invalidate() {
+        current = null;
+    }
+
+    /**
+     * Timer item showing the current remaining time; the stack must not be modified
+     */
+    public ItemStack getTimerItem() {
+        String time = ItemUtils.formatTimeRemaining(plugin.getRotationManager().getTimeUntilNextRotation());
+        TimerItem timer = current;
+        if (timer != null && timer.time.equals(time)) {
+            return timer.item;
+        }
+
+        MessageCatalog messages = plugin.getMessages();
+        RotationManager rotationManager = plugin.getRotationManager();
+        ItemStack item = ItemUtils.createItem(
+            Material.CLOCK,
+            messages.get(Message.TIMER_NAME),
+            messages.get(Message.TIME_REMAINING, time),
+            rotationManager.hasCronSchedule()
+                ? messages.get(Message.NEXT_ROTATION, rotationManager.formatNextRotation())
+                : messages.get(Message.ROTATION_INTERVAL, rotationManager.getRotationIntervalHours())
+        );
+        current = new TimerItem(time, item);
+        return item;
+    }
+
+    private void tick() {
+        if (viewers.isEmpty()) {
+            return;
+        }
+
+        ItemStack item = getTimerItem();
+        for (Iterator<Viewer> iterator = viewers.values().iterator(); iterator.hasNext(); ) {
+            Viewer viewer = iterator.next();
+            if (viewer.shown == item) {
+                continue;
+            }
+            if (!viewer.player.isOnline()) {
+                iterator.remove();
+                continue;
+            }
+
+            viewer.shown = item;
+            // Inventories belong to the player's region on Folia; on Paper this is already the main thread
+            if (Bukkit.isOwnedByCurrentRegion(viewer.player)) {
+                viewer.inventory.setItem(viewer.timerSlot, item);
+            } else {
+                viewer.player.getScheduler().run(plugin, scheduled -> viewer.inventory.setItem(viewer.timerSlot, item), null);
+            }
+        }
+    }
+
+    private static final class Viewer {
+        private final Player player;
+        private final Inventory inventory;
+        private final int timerSlot;
+        private ItemStack shown; // Timer item last patched in, afterwards only touched by the timer task
+
+        private Viewer(Player player, Inventory inventory, int timerSlot, ItemStack shown) {
+            this.player = player;
+            this.inventory = inventory;
+            this.timerSlot = timerSlot;
+            this.shown = shown;
+        }
+    }
+
+    private record TimerItem(String time, ItemStack item) {
+    }
+}
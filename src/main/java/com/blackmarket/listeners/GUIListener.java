@@ -6,9 +6,11 @@ import com.blackmarket.data.MarketItem;
 import com.blackmarket.gui.AdminGUI;
 import com.blackmarket.gui.CostEditorGUI;
 import com.blackmarket.gui.PlayerShopGUI;
+import com.blackmarket.gui.ShopRenderCache;
+import com.blackmarket.utils.CostMatcher;
 import com.blackmarket.utils.ItemUtils;
-import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
-import org.bukkit.Bukkit;
+import com.blackmarket.utils.MessageCatalog.Message;
+import com.blackmarket.utils.MetricsRegistry.Metric;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -17,17 +19,20 @@ import org.bukkit.event.inventory.ClickType;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Listener for GUI interactions
+ * Listener for GUI interactions.
+ * Open menus are updated in place where possible; menus are reopened or refreshed
+ * on the player's own scheduler, which runs on their region thread on Folia.
  */
 public class GUIListener implements Listener {
     private final BlackMarket plugin;
     private final DataManager dataManager;
-    private final Map<UUID, UUID> editingSessions = new HashMap<>(); // Player UUID -> Item ID being edited
 
     public GUIListener(BlackMarket plugin, DataManager dataManager) {
         this.plugin = plugin;
@@ -36,67 +41,76 @@ public class GUIListener implements Listener {
 
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
-        if (!(event.getWhoClicked() instanceof Player player)) {
+        // Plugin inventories are recognized by their holder; everything else returns here
+        InventoryHolder holder = event.getInventory().getHolder(false);
+        if (!(holder instanceof PlayerShopGUI.Holder)
+                && !(holder instanceof AdminGUI.Holder)
+                && !(holder instanceof CostEditorGUI.Holder)) {
             return;
         }
 
-        Inventory inventory = event.getInventory();
-        String title = PlainTextComponentSerializer.plainText().serialize(event.getView().title());
-
-        // Handle Player Shop GUI
-        if (title.equals(PlayerShopGUI.getTitle())) {
-            handlePlayerShopClick(event, player, inventory);
+        if (!(event.getWhoClicked() instanceof Player player)) {
             return;
         }
 
-        // Handle Admin GUI
-        if (title.equals(AdminGUI.getTitle())) {
-            handleAdminGUIClick(event, player, inventory);
-            return;
+        Inventory inventory = event.getInventory();
+        if (holder instanceof PlayerShopGUI.Holder shop) {
+            handlePlayerShopClick(event, player, shop);
+        } else if (holder instanceof AdminGUI.Holder admin) {
+            handleAdminGUIClick(event, player, inventory, admin);
+        } else if (holder instanceof CostEditorGUI.Holder editor) {
+            handleCostEditorClick(event, player, inventory, editor.getItemId());
         }
+    }
 
-        // Handle Cost Editor GUI
-        if (CostEditorGUI.isCostEditorGUI(title)) {
-            handleCostEditorClick(event, player, inventory, title);
-            return;
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (event.getInventory().getHolder(false) instanceof PlayerShopGUI.Holder) {
+            plugin.getShopTimer().removeViewer(event.getPlayer().getUniqueId(), event.getInventory());
         }
     }
 
-    private void handlePlayerShopClick(InventoryClickEvent event, Player player, Inventory inventory) {
+    private void handlePlayerShopClick(InventoryClickEvent event, Player player, PlayerShopGUI.Holder shop) {
         event.setCancelled(true);
 
-        ItemStack clicked = event.getCurrentItem();
-        if (clicked == null || clicked.getType() == Material.AIR) {
+        // Only item slots of the shop do anything
+        int itemIndex = shop.getItemIndex(event.getRawSlot());
+        if (itemIndex == -1) {
             return;
         }
 
-        // Check if it's a filler or timer item
-        if (clicked.getType() == Material.GRAY_STAINED_GLASS_PANE || clicked.getType() == Material.CLOCK) {
+        long start = System.nanoTime();
+        handlePurchase(event, player, shop, itemIndex);
+        plugin.getMetrics().record(Metric.PURCHASE, start);
+    }
+
+    /**
+     * Buy the active item shown in a clicked shop slot
+     */
+    private void handlePurchase(InventoryClickEvent event, Player player, PlayerShopGUI.Holder shop, int itemIndex) {
+        ItemStack clicked = event.getCurrentItem();
+        if (clicked == null || clicked.getType() == Material.AIR) {
             return;
         }
 
         // Check if it's a barrier (sold out)
         if (clicked.getType() == Material.BARRIER) {
-            player.sendMessage(ItemUtils.translateColorCodes(
-                plugin.getConfig().getString("messages.already-purchased", "&cYou have already purchased this item!")
-            ));
+            player.sendMessage(plugin.getMessages().get(Message.ALREADY_PURCHASED));
             return;
         }
 
-        // Find the market item
-        List<MarketItem> activeItems = dataManager.getActiveItems();
-        int slot = event.getSlot();
-        int[] itemSlots = {11, 13, 15};
-        
-        int itemIndex = -1;
-        for (int i = 0; i < itemSlots.length; i++) {
-            if (itemSlots[i] == slot) {
-                itemIndex = i;
-                break;
-            }
+        // The shop rotated or was edited since it was opened; show the current one instead of buying from the old view
+        ShopRenderCache.Render render = plugin.getShopRenderCache().getRender();
+        if (render.getVersion() != shop.getVersion()) {
+            player.getScheduler().run(plugin, task -> {
+                new PlayerShopGUI(plugin, dataManager).open(player);
+            }, null);
+            return;
         }
 
-        if (itemIndex == -1 || itemIndex >= activeItems.size()) {
+        // Find the market item
+        List<MarketItem> activeItems = render.getActiveItems();
+        if (itemIndex >= activeItems.size()) {
             return;
         }
 
@@ -104,228 +118,260 @@ public class GUIListener implements Listener {
 
         // Check if already purchased
         if (dataManager.hasPlayerPurchased(player.getUniqueId(), marketItem.getId())) {
-            player.sendMessage(ItemUtils.translateColorCodes(
-                plugin.getConfig().getString("messages.already-purchased", "&cYou have already purchased this item!")
-            ));
+            player.sendMessage(plugin.getMessages().get(Message.ALREADY_PURCHASED));
             return;
         }
 
-        // Check if player has required items
-        if (!ItemUtils.hasRequiredItems(player.getInventory(), marketItem.getCostItems())) {
-            player.sendMessage(ItemUtils.translateColorCodes(
-                plugin.getConfig().getString("messages.not-enough-items", "&cYou don't have the required items!")
-            ));
+        // Check if player has required items, listing what is missing
+        CostMatcher.Plan plan = marketItem.getCostMatcher().plan(player.getInventory());
+        if (!plan.isSatisfied()) {
+            player.sendMessage(plugin.getMessages().get(Message.NOT_ENOUGH_ITEMS));
+            for (CostMatcher.Shortfall shortfall : plan.getShortfalls()) {
+                player.sendMessage(plugin.getMessages().get(Message.MISSING_ITEM, shortfall.missing(), ItemUtils.getItemName(shortfall.item())));
+            }
             return;
         }
 
-        // Remove cost items and give reward
-        ItemUtils.removeRequiredItems(player.getInventory(), marketItem.getCostItems());
-        player.getInventory().addItem(marketItem.getItemStack());
-
-        // Record purchase
-        dataManager.recordPurchase(player.getUniqueId(), marketItem.getId());
-
-        player.sendMessage(ItemUtils.translateColorCodes(
-            plugin.getConfig().getString("messages.purchase-success", "&aYou have successfully purchased this item!")
-        ));
+        // Record purchase first, so a purchase that cannot be recorded never takes the cost items
+        CompletableFuture<DataManager.PurchaseResult> recording = dataManager.recordPurchase(player.getUniqueId(), marketItem.getId());
+        Inventory shopInventory = event.getInventory();
+        int slot = event.getRawSlot();
+        if (recording.isDone()) {
+            completePurchase(player, marketItem, plan, recording.join(), shopInventory, slot, render);
+            return;
+        }
 
-        // Refresh GUI
-        player.closeInventory();
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            new PlayerShopGUI(plugin, dataManager, plugin.getRotationManager()).open(player);
-        });
+        // Shared storage answers later; the inventory may have changed by then, so the cost is planned again.
+        // A player who logged off in the meantime has not paid, so their purchase is taken back.
+        recording.thenAccept(result -> player.getScheduler().run(plugin,
+            task -> completePurchase(player, marketItem, null, result, shopInventory, slot, render),
+            () -> {
+                if (result == DataManager.PurchaseResult.RECORDED) {
+                    dataManager.cancelPurchase(player.getUniqueId(), marketItem.getId());
+                }
+            }));
     }
 
-    private void handleAdminGUIClick(InventoryClickEvent event, Player player, Inventory inventory) {
-        ItemStack clicked = event.getCurrentItem();
-        ItemStack cursor = event.getCursor();
-
-        // Handle reload config button (slot 47)
-        if (event.getSlot() == 47) {
-            event.setCancelled(true);
-            if (clicked != null && clicked.getType() == Material.COMMAND_BLOCK) {
-                plugin.reloadConfig();
-                player.sendMessage(ItemUtils.translateColorCodes(
-                    plugin.getConfig().getString("messages.config-reloaded", "&aConfig reloaded successfully!")
-                ));
-            }
+    /**
+     * Take the cost and hand out the item once the purchase is recorded, or tell the player why not.
+     * Runs on the player's region thread.
+     *
+     * @param plan the cost plan if the inventory is unchanged since it was made, otherwise null
+     */
+    private void completePurchase(Player player, MarketItem marketItem, CostMatcher.Plan plan, DataManager.PurchaseResult result,
+                                  Inventory shopInventory, int slot, ShopRenderCache.Render render) {
+        if (result != DataManager.PurchaseResult.RECORDED) {
+            player.sendMessage(plugin.getMessages().get(result == DataManager.PurchaseResult.ALREADY_PURCHASED
+                ? Message.ALREADY_PURCHASED : Message.PURCHASES_UNAVAILABLE));
             return;
         }
 
-        // Handle force rotation button (slot 49)
-        if (event.getSlot() == 49) {
-            event.setCancelled(true);
-            
-            if (clicked != null && clicked.getType() == Material.EMERALD) {
-                plugin.getRotationManager().performRotation();
-                player.sendMessage(ItemUtils.translateColorCodes(
-                    plugin.getConfig().getString("messages.rotation-forced", "&6The black market items have been rotated!")
-                ));
-                player.closeInventory();
+        if (plan == null) {
+            plan = marketItem.getCostMatcher().plan(player.getInventory());
+            if (!plan.isSatisfied()) {
+                dataManager.cancelPurchase(player.getUniqueId(), marketItem.getId());
+                player.sendMessage(plugin.getMessages().get(Message.NOT_ENOUGH_ITEMS));
+                return;
             }
-            return;
         }
 
-        // Handle add item slot (slot 53) - allow dropping items with cursor
-        if (event.getSlot() == 53) {
-            event.setCancelled(true);
-            if (cursor != null && cursor.getType() != Material.AIR) {
-                // Add item from cursor to pool
-                MarketItem newItem = new MarketItem(cursor.clone(), new ArrayList<>(), 1);
-                dataManager.addItemToPool(newItem);
-                
-                player.sendMessage(ItemUtils.translateColorCodes(
-                    plugin.getConfig().getString("messages.item-added", "&aItem added to the black market pool!")
-                ));
-                
-                // Clear cursor
-                event.setCursor(null);
-                
-                // Refresh GUI
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    new AdminGUI(plugin, dataManager, plugin.getRotationManager()).open(player);
-                });
-            }
-            return;
+        // Remove cost items and give reward
+        plan.apply(player.getInventory());
+        player.getInventory().addItem(marketItem.getItemStack());
+
+        player.sendMessage(plugin.getMessages().get(Message.PURCHASE_SUCCESS));
+
+        // Only the bought slot changes, so update it in place instead of reopening the shop
+        if (player.getOpenInventory().getTopInventory() == shopInventory) {
+            shopInventory.setItem(slot, render.getSoldOutItem());
         }
+    }
 
-        // Handle clicking on items in the pool or empty slots for adding items
-        if (event.getSlot() < 45) {
-            event.setCancelled(true);
-
-            // Check if clicking on empty slot with item on cursor - add to pool
-            if ((clicked == null || clicked.getType() == Material.AIR) && cursor != null && cursor.getType() != Material.AIR) {
-                // Add item from cursor to pool
-                MarketItem newItem = new MarketItem(cursor.clone(), new ArrayList<>(), 1);
-                dataManager.addItemToPool(newItem);
-                
-                player.sendMessage(ItemUtils.translateColorCodes(
-                    plugin.getConfig().getString("messages.item-added", "&aItem added to the black market pool!")
-                ));
-                
-                // Clear cursor
-                event.setCursor(null);
-                
-                // Refresh GUI
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    new AdminGUI(plugin, dataManager, plugin.getRotationManager()).open(player);
-                });
-                return;
-            }
+    private void handleAdminGUIClick(InventoryClickEvent event, Player player, Inventory inventory, AdminGUI.Holder admin) {
+        ItemStack clicked = event.getCurrentItem();
+        ItemStack cursor = event.getCursor();
 
-            // Handle clicking on existing items in the pool
-            if (clicked != null && clicked.getType() != Material.AIR) {
-                // Find the item in the pool
-                List<UUID> poolIds = new ArrayList<>(dataManager.getItemPool().keySet());
-                if (event.getSlot() < poolIds.size()) {
-                    UUID itemId = poolIds.get(event.getSlot());
-                    MarketItem marketItem = dataManager.getMarketItem(itemId);
-
-                    if (marketItem != null) {
-                        if (event.getClick() == ClickType.LEFT) {
-                            // Open cost editor
-                            editingSessions.put(player.getUniqueId(), itemId);
-                            new CostEditorGUI(plugin, dataManager, itemId).open(player);
-                        } else if (event.getClick() == ClickType.RIGHT) {
-                            // Remove from pool
-                            dataManager.removeItemFromPool(itemId);
-                            player.sendMessage(ItemUtils.translateColorCodes("&cItem removed from pool!"));
-                            
-                            // Refresh GUI
-                            Bukkit.getScheduler().runTask(plugin, () -> {
-                                new AdminGUI(plugin, dataManager, plugin.getRotationManager()).open(player);
-                            });
-                        }
+        switch (AdminGUI.getSlotAction(event.getRawSlot())) {
+            case RELOAD_CONFIG -> {
+                event.setCancelled(true);
+                if (clicked != null && clicked.getType() == Material.COMMAND_BLOCK) {
+                    plugin.reloadConfig();
+                    plugin.getMessages().reload();
+                    plugin.getRotationManager().reload();
+                    plugin.getShopRenderCache().invalidate();
+                    plugin.getShopTimer().invalidate();
+                    player.sendMessage(plugin.getMessages().get(Message.CONFIG_RELOADED));
+                }
+            }
+            case FORCE_ROTATION -> {
+                event.setCancelled(true);
+                if (clicked != null && clicked.getType() == Material.EMERALD) {
+                    if (!dataManager.isRotationLeader()) {
+                        player.sendMessage(plugin.getMessages().get(Message.ROTATION_NOT_LEADER, dataManager.getRotationLeaderId()));
+                        return;
                     }
+                    plugin.getRotationManager().performRotation();
+                    player.sendMessage(plugin.getMessages().get(Message.ROTATION_FORCED));
+                    player.closeInventory();
                 }
             }
-            return;
-        }
-
-        // Handle adding items to pool via shift-click or placing
-        if (event.getClick() == ClickType.SHIFT_LEFT || event.getClick() == ClickType.SHIFT_RIGHT) {
-            if (event.getClickedInventory() != inventory) {
-                // Player is shift-clicking from their inventory
+            case PREVIOUS_PAGE -> {
                 event.setCancelled(true);
-                
+                if (clicked != null && clicked.getType() == Material.ARROW) {
+                    openAdminPage(player, admin.getPage() - 1);
+                }
+            }
+            case NEXT_PAGE -> {
+                event.setCancelled(true);
+                if (clicked != null && clicked.getType() == Material.ARROW) {
+                    openAdminPage(player, admin.getPage() + 1);
+                }
+            }
+            case ADD_ITEM -> {
+                // Allow dropping items with cursor
+                event.setCancelled(true);
+                if (cursor != null && cursor.getType() != Material.AIR) {
+                    addItemFromCursor(event, player, admin);
+                }
+            }
+            case POOL_ITEM -> {
+                event.setCancelled(true);
+
+                // Check if clicking on empty slot with item on cursor - add to pool
+                if ((clicked == null || clicked.getType() == Material.AIR) && cursor != null && cursor.getType() != Material.AIR) {
+                    addItemFromCursor(event, player, admin);
+                    return;
+                }
+
+                // Handle clicking on existing items in the pool
                 if (clicked != null && clicked.getType() != Material.AIR) {
+                    handlePoolItemClick(event, player, admin);
+                }
+            }
+            case NONE -> {
+                event.setCancelled(true);
+
+                // Handle adding items to pool via shift-click from the player's inventory
+                boolean shiftClick = event.getClick() == ClickType.SHIFT_LEFT || event.getClick() == ClickType.SHIFT_RIGHT;
+                if (shiftClick && event.getClickedInventory() != inventory && clicked != null && clicked.getType() != Material.AIR) {
                     // Add to pool
-                    MarketItem newItem = new MarketItem(clicked.clone(), new ArrayList<>(), 1);
+                    MarketItem newItem = new MarketItem(clicked, List.of(), 1);
                     dataManager.addItemToPool(newItem);
-                    
-                    player.sendMessage(ItemUtils.translateColorCodes(
-                        plugin.getConfig().getString("messages.item-added", "&aItem added to the black market pool!")
-                    ));
-                    
+
+                    player.sendMessage(plugin.getMessages().get(Message.ITEM_ADDED));
+
                     // Remove item from player inventory
                     event.getClickedInventory().setItem(event.getSlot(), null);
-                    
-                    // Refresh GUI
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        new AdminGUI(plugin, dataManager, plugin.getRotationManager()).open(player);
-                    });
+
+                    refreshAdminGUI(player, admin);
                 }
             }
-        } else {
-            event.setCancelled(true);
         }
     }
 
-    private void handleCostEditorClick(InventoryClickEvent event, Player player, Inventory inventory, String title) {
-        ItemStack clicked = event.getCurrentItem();
+    private void addItemFromCursor(InventoryClickEvent event, Player player, AdminGUI.Holder admin) {
+        // Add item from cursor to pool
+        MarketItem newItem = new MarketItem(event.getCursor(), List.of(), 1);
+        dataManager.addItemToPool(newItem);
+
+        player.sendMessage(plugin.getMessages().get(Message.ITEM_ADDED));
+
+        // Clear cursor
+        event.setCursor(null);
+
+        refreshAdminGUI(player, admin);
+    }
+
+    private void openAdminPage(Player player, int page) {
+        player.getScheduler().run(plugin, task -> {
+            new AdminGUI(plugin, dataManager).open(player, page);
+        }, null);
+    }
 
-        // Extract item ID from title
-        String idPart = title.substring(CostEditorGUI.getTitlePrefix().length());
-        UUID itemId = editingSessions.get(player.getUniqueId());
+    /**
+     * Re-render the changed slots of an open admin menu after the click is processed
+     */
+    private void refreshAdminGUI(Player player, AdminGUI.Holder admin) {
+        player.getScheduler().run(plugin, task -> {
+            new AdminGUI(plugin, dataManager).refresh(player, admin);
+        }, null);
+    }
 
+    private void handlePoolItemClick(InventoryClickEvent event, Player player, AdminGUI.Holder admin) {
+        // Find the item shown in the slot
+        UUID itemId = admin.getItemId(event.getRawSlot());
         if (itemId == null) {
-            event.setCancelled(true);
             return;
         }
 
-        // Allow manipulating items in slots 19-48 (the working area)
-        if (event.getSlot() >= 19 && event.getSlot() < 49) {
-            // Allow normal inventory operations here
+        MarketItem marketItem = dataManager.getMarketItem(itemId);
+        if (marketItem == null) {
             return;
         }
 
-        event.setCancelled(true);
+        if (event.getClick() == ClickType.LEFT) {
+            // Open cost editor
+            new CostEditorGUI(plugin, dataManager, itemId).open(player);
+        } else if (event.getClick() == ClickType.RIGHT) {
+            // Remove from pool
+            dataManager.removeItemFromPool(itemId);
+            player.sendMessage(plugin.getMessages().get(Message.ITEM_REMOVED));
 
-        if (clicked == null || clicked.getType() == Material.AIR) {
-            return;
+            refreshAdminGUI(player, admin);
         }
+    }
 
-        // Handle save button
-        if (event.getSlot() == 49 && clicked.getType() == Material.EMERALD) {
-            saveCostItems(player, inventory, itemId);
+    private void handleCostEditorClick(InventoryClickEvent event, Player player, Inventory inventory, UUID itemId) {
+        CostEditorGUI.SlotAction action = CostEditorGUI.getSlotAction(event.getRawSlot());
+
+        // Allow manipulating items in the working area and the player's own inventory,
+        // except shift-clicks that would move items into the cost display
+        if (action == CostEditorGUI.SlotAction.COST_SLOT) {
             return;
         }
-
-        // Handle weight adjustment
-        if (event.getSlot() == 50 && clicked.getType() == Material.LIME_DYE) {
-            adjustWeight(player, itemId, 1);
+        if (event.getClickedInventory() != inventory && !event.isShiftClick()) {
             return;
         }
 
-        if (event.getSlot() == 51 && clicked.getType() == Material.RED_DYE) {
-            adjustWeight(player, itemId, -1);
+        event.setCancelled(true);
+
+        ItemStack clicked = event.getCurrentItem();
+        if (clicked == null || clicked.getType() == Material.AIR) {
             return;
         }
 
-        // Handle cancel button
-        if (event.getSlot() == 53 && clicked.getType() == Material.BARRIER) {
-            editingSessions.remove(player.getUniqueId());
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                new AdminGUI(plugin, dataManager, plugin.getRotationManager()).open(player);
-            });
-            return;
+        switch (action) {
+            case SAVE -> {
+                if (clicked.getType() == Material.EMERALD) {
+                    saveCostItems(player, inventory, itemId);
+                }
+            }
+            case INCREASE_WEIGHT -> {
+                if (clicked.getType() == Material.LIME_DYE) {
+                    adjustWeight(player, inventory, itemId, 1);
+                }
+            }
+            case DECREASE_WEIGHT -> {
+                if (clicked.getType() == Material.RED_DYE) {
+                    adjustWeight(player, inventory, itemId, -1);
+                }
+            }
+            case CANCEL -> {
+                if (clicked.getType() == Material.BARRIER) {
+                    player.getScheduler().run(plugin, task -> {
+                        new AdminGUI(plugin, dataManager).openPageOf(player, itemId);
+                    }, null);
+                }
+            }
+            default -> {
+            }
         }
     }
 
     private void saveCostItems(Player player, Inventory inventory, UUID itemId) {
         MarketItem marketItem = dataManager.getMarketItem(itemId);
         if (marketItem == null) {
-            player.sendMessage(ItemUtils.translateColorCodes("&cItem not found!"));
+            player.sendMessage(plugin.getMessages().get(Message.ITEM_NOT_FOUND));
             return;
         }
 
@@ -334,50 +380,32 @@ public class GUIListener implements Listener {
         for (int i = 19; i < 49; i++) {
             ItemStack item = inventory.getItem(i);
             if (item != null && item.getType() != Material.AIR) {
-                costItems.add(item.clone());
+                costItems.add(item);
             }
         }
 
-        marketItem.setCostItems(costItems);
-        dataManager.saveData();
+        // The market item copies the stacks
+        dataManager.setItemCosts(itemId, costItems);
 
-        player.sendMessage(ItemUtils.translateColorCodes("&aCost items saved!"));
-        editingSessions.remove(player.getUniqueId());
+        player.sendMessage(plugin.getMessages().get(Message.COST_SAVED));
 
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            new AdminGUI(plugin, dataManager, plugin.getRotationManager()).open(player);
-        });
+        player.getScheduler().run(plugin, task -> {
+            new AdminGUI(plugin, dataManager).openPageOf(player, itemId);
+        }, null);
     }
 
-    private void adjustWeight(Player player, UUID itemId, int delta) {
+    private void adjustWeight(Player player, Inventory inventory, UUID itemId, int delta) {
         MarketItem marketItem = dataManager.getMarketItem(itemId);
         if (marketItem == null) {
             return;
         }
 
         int newWeight = Math.max(1, marketItem.getWeight() + delta);
-        marketItem.setWeight(newWeight);
-        dataManager.saveData();
+        dataManager.setItemWeight(itemId, newWeight);
 
-        player.sendMessage(ItemUtils.translateColorCodes("&eWeight set to: &6" + newWeight));
-
-        // Refresh GUI
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            new CostEditorGUI(plugin, dataManager, itemId).open(player);
-        });
-    }
+        player.sendMessage(plugin.getMessages().get(Message.WEIGHT_SET, newWeight));
 
-    @EventHandler
-    public void onInventoryClose(InventoryCloseEvent event) {
-        if (!(event.getPlayer() instanceof Player player)) {
-            return;
-        }
-
-        String title = PlainTextComponentSerializer.plainText().serialize(event.getView().title());
-        
-        // Clean up editing sessions when closing cost editor
-        if (CostEditorGUI.isCostEditorGUI(title)) {
-            editingSessions.remove(player.getUniqueId());
-        }
+        // Only the weight buttons change
+        CostEditorGUI.showWeight(inventory, newWeight);
     }
 }
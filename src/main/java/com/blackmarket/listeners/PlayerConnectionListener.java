@@ -0,0 +1,42 @@
+package com.blackmarket.listeners;
+
+import com.blackmarket.data.DataManager;
+import com.blackmarket.gui.ShopRenderCache;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Loads a player's purchases while they log in and releases them, along with
+ * their cached shop inventory, when they quit
+ */
+public class PlayerConnectionListener implements Listener {
+    private final DataManager dataManager;
+    private final ShopRenderCache shopRenderCache;
+
+    public PlayerConnectionListener(DataManager dataManager, ShopRenderCache shopRenderCache) {
+        this.dataManager = dataManager;
+        this.shopRenderCache = shopRenderCache;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            dataManager.preloadPurchases(event.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        dataManager.retainPurchases(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        dataManager.releasePurchases(event.getPlayer().getUniqueId());
+        shopRenderCache.forgetPlayer(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,209 @@
+package com.blackmarket.utils;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+
+/**
+ * Matches a cost list against an inventory in a single pass.
+ * Equal cost stacks are grouped once when the matcher is built, and inventory
+ * slots are only compared with cost groups of the same material, so planning
+ * takes O(slots + costs). The resulting plan both answers whether the cost is
+ * affordable and performs the deduction, so the two can never disagree.
+ *
+ * Each cost group also carries a precomputed {@link Fingerprint}. An inventory
+ * stack is only compared with isSimilar, and its full meta, once its fingerprint
+ * matches, so plain stacks and stacks with meta never reach isSimilar against each other.
+ */
+public final class CostMatcher {
+    private final ItemStack[] prototypes; // One stack per group of equal cost items
+    private final Fingerprint[] fingerprints;
+    private final int[] requiredAmounts;
+    private final Map<Material, int[]> groupsByMaterial = new EnumMap<>(Material.class);
+
+    public CostMatcher(List<ItemStack> costItems) {
+        List<ItemStack> prototypeList = new ArrayList<>();
+        List<Integer> metaHashList = new ArrayList<>();
+        List<Integer> amountList = new ArrayList<>();
+
+        for (ItemStack cost : costItems) {
+            if (cost == null || cost.getType() == Material.AIR) {
+                continue;
+            }
+
+            int metaHash = metaHash(cost);
+            int group = indexOfEqual(prototypeList, metaHashList, cost, metaHash);
+            if (group == -1) {
+                prototypeList.add(cost.clone());
+                metaHashList.add(metaHash);
+                amountList.add(cost.getAmount());
+            } else {
+                amountList.set(group, amountList.get(group) + cost.getAmount());
+            }
+        }
+
+        this.prototypes = prototypeList.toArray(new ItemStack[0]);
+        this.requiredAmounts = amountList.stream().mapToInt(Integer::intValue).toArray();
+        this.fingerprints = new Fingerprint[prototypes.length];
+        for (int group = 0; group < prototypes.length; group++) {
+            fingerprints[group] = Fingerprint.of(prototypes[group]);
+        }
+
+        Map<Material, List<Integer>> byMaterial = new EnumMap<>(Material.class);
+        for (int group = 0; group < prototypes.length; group++) {
+            byMaterial.computeIfAbsent(prototypes[group].getType(), k -> new ArrayList<>()).add(group);
+        }
+        byMaterial.forEach((material, groups) -> groupsByMaterial.put(material, groups.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Group of a cost stack equal to the given one; the serialized meta hash rules out most pairs before isSimilar
+     */
+    private static int indexOfEqual(List<ItemStack> prototypes, List<Integer> metaHashes, ItemStack item, int metaHash) {
+        for (int i = 0; i < prototypes.size(); i++) {
+            ItemStack prototype = prototypes.get(i);
+            if (metaHashes.get(i) == metaHash && prototype.getType() == item.getType() && prototype.isSimilar(item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stable hash of an item's serialized form without its amount
+     */
+    private static int metaHash(ItemStack item) {
+        return Arrays.hashCode(item.asOne().serializeAsBytes());
+    }
+
+    /**
+     * Plan the deduction of this cost from the given inventory contents
+     */
+    public Plan plan(ItemStack[] contents) {
+        int[] remaining = requiredAmounts.clone();
+        int[] removalSlots = new int[contents.length];
+        int[] removalAmounts = new int[contents.length];
+        int removals = 0;
+        int unmetGroups = remaining.length;
+
+        for (int slot = 0; slot < contents.length && unmetGroups > 0; slot++) {
+            ItemStack item = contents[slot];
+            if (item == null) {
+                continue;
+            }
+
+            int[] candidates = groupsByMaterial.get(item.getType());
+            if (candidates == null) {
+                continue;
+            }
+
+            Fingerprint fingerprint = Fingerprint.of(item);
+            for (int group : candidates) {
+                if (remaining[group] == 0 || !fingerprints[group].equals(fingerprint) || !prototypes[group].isSimilar(item)) {
+                    continue;
+                }
+
+                int taken = Math.min(remaining[group], item.getAmount());
+                remaining[group] -= taken;
+                if (remaining[group] == 0) {
+                    unmetGroups--;
+                }
+                removalSlots[removals] = slot;
+                removalAmounts[removals] = taken;
+                removals++;
+                break;
+            }
+        }
+
+        return new Plan(contents, Arrays.copyOf(removalSlots, removals), Arrays.copyOf(removalAmounts, removals), remaining);
+    }
+
+    /**
+     * Convenience for planning against an inventory's current contents
+     */
+    public Plan plan(Inventory inventory) {
+        return plan(inventory.getContents());
+    }
+
+    /**
+     * Outcome of matching a cost against one inventory snapshot.
+     * Apply it right away, before the inventory can change.
+     */
+    public final class Plan {
+        private final ItemStack[] contents;
+        private final int[] removalSlots;
+        private final int[] removalAmounts;
+        private final int[] missingAmounts;
+
+        private Plan(ItemStack[] contents, int[] removalSlots, int[] removalAmounts, int[] missingAmounts) {
+            this.contents = contents;
+            this.removalSlots = removalSlots;
+            this.removalAmounts = removalAmounts;
+            this.missingAmounts = missingAmounts;
+        }
+
+        public boolean isSatisfied() {
+            for (int missing : missingAmounts) {
+                if (missing > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Cost items the inventory does not hold enough of, with the missing amount
+         */
+        public List<Shortfall> getShortfalls() {
+            List<Shortfall> shortfalls = new ArrayList<>();
+            for (int group = 0; group < missingAmounts.length; group++) {
+                if (missingAmounts[group] > 0) {
+                    shortfalls.add(new Shortfall(prototypes[group], missingAmounts[group]));
+                }
+            }
+            return shortfalls;
+        }
+
+        /**
+         * Remove the planned amounts from the inventory the plan was made for.
+         * Does nothing and returns false if the cost is not satisfied.
+         */
+        public boolean apply(Inventory inventory) {
+            if (!isSatisfied()) {
+                return false;
+            }
+
+            for (int i = 0; i < removalSlots.length; i++) {
+                ItemStack item = contents[removalSlots[i]];
+                int left = item.getAmount() - removalAmounts[i];
+                if (left <= 0) {
+                    inventory.setItem(removalSlots[i], null);
+                } else {
+                    ItemStack reduced = item.clone();
+                    reduced.setAmount(left);
+                    inventory.setItem(removalSlots[i], reduced);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Cheap summary of a stack that similar stacks always share: its material and whether it has meta.
+     * Only fields that can be read without building anything are used, since it is taken for every
+     * inventory slot on every click; hashing the meta of a slot would cost as much as isSimilar.
+     */
+    public record Fingerprint(Material type, boolean hasMeta) {
+        public static Fingerprint of(ItemStack item) {
+            return new Fingerprint(item.getType(), item.hasItemMeta());
+        }
+    }
+
+    /**
+     * A cost item the player is short of; the item must not be modified
+     */
+    public record Shortfall(ItemStack item, int missing) {
+    }
+}
@@ -3,6 +3,7 @@ package com.blackmarket.utils;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextDecoration;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -47,54 +48,41 @@ public class ItemUtils {
     }
 
     /**
-     * Check if player has required items in inventory
+     * Create an ItemStack with an already parsed display name and lore
      */
-    public static boolean hasRequiredItems(org.bukkit.inventory.Inventory inventory, List<ItemStack> requiredItems) {
-        ItemStack[] contents = inventory.getContents();
-        
-        for (ItemStack required : requiredItems) {
-            int requiredAmount = required.getAmount();
-            int foundAmount = 0;
-            
-            for (ItemStack item : contents) {
-                if (item != null && item.isSimilar(required)) {
-                    foundAmount += item.getAmount();
+    public static ItemStack createItem(Material material, Component name, Component... lore) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+
+        if (meta != null) {
+            meta.displayName(name.decoration(TextDecoration.ITALIC, false));
+
+            if (lore.length > 0) {
+                List<Component> loreList = new ArrayList<>(lore.length);
+                for (Component line : lore) {
+                    loreList.add(line.decoration(TextDecoration.ITALIC, false));
                 }
+                meta.lore(loreList);
             }
-            
-            if (foundAmount < requiredAmount) {
-                return false;
-            }
+
+            item.setItemMeta(meta);
         }
-        
-        return true;
+
+        return item;
     }
 
     /**
-     * Remove required items from player inventory
+     * Readable name of an item for cost listings
      */
-    public static void removeRequiredItems(org.bukkit.inventory.Inventory inventory, List<ItemStack> requiredItems) {
-        for (ItemStack required : requiredItems) {
-            int amountToRemove = required.getAmount();
-            
-            for (int i = 0; i < inventory.getSize(); i++) {
-                ItemStack item = inventory.getItem(i);
-                
-                if (item != null && item.isSimilar(required)) {
-                    if (item.getAmount() <= amountToRemove) {
-                        amountToRemove -= item.getAmount();
-                        inventory.setItem(i, null);
-                    } else {
-                        item.setAmount(item.getAmount() - amountToRemove);
-                        amountToRemove = 0;
-                    }
-                    
-                    if (amountToRemove == 0) {
-                        break;
-                    }
-                }
+    public static String getItemName(ItemStack item) {
+        String name = item.getType().toString().toLowerCase().replace("_", " ");
+        if (item.hasItemMeta()) {
+            ItemMeta meta = item.getItemMeta();
+            if (meta.hasDisplayName()) {
+                name = PlainTextComponentSerializer.plainText().serialize(meta.displayName());
             }
         }
+        return name;
     }
 
     /**
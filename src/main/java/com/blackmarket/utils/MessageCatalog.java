@@ -0,0 +1,246 @@
+package com.blackmarket.utils;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.Style;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Player-facing messages from the messages section of config.yml, parsed once
+ * into Component templates. Placeholders like {time} are located when the
+ * catalog is built, so rendering a message only fills in values and never
+ * parses color codes. The whole catalog is swapped at once on reload.
+ */
+public class MessageCatalog {
+    private final JavaPlugin plugin;
+    private volatile Map<Message, Template> templates = new EnumMap<>(Message.class);
+
+    public MessageCatalog(JavaPlugin plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+
+    /**
+     * Parse every message again from the current config
+     */
+    public void reload() {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("messages");
+        Map<Message, Template> compiled = new EnumMap<>(Message.class);
+        for (Message message : Message.values()) {
+            String text = section != null ? section.getString(message.key, message.defaultText) : message.defaultText;
+            compiled.put(message, Template.compile(text, message.placeholders));
+        }
+        templates = compiled;
+    }
+
+    /**
+     * Render a message, filling its placeholders in the order they are declared on the message
+     */
+    public Component get(Message message, Object... values) {
+        return templates.get(message).render(values);
+    }
+
+    /**
+     * All messages with their config key, default text and placeholders
+     */
+    public enum Message {
+        PURCHASE_SUCCESS("purchase-success", "&aYou have successfully purchased this item!"),
+        ALREADY_PURCHASED("already-purchased", "&cYou have already purchased this item!"),
+        PURCHASES_UNAVAILABLE("purchases-unavailable", "&cYour purchase could not be checked right now, try again in a moment."),
+        NOT_ENOUGH_ITEMS("not-enough-items", "&cYou don't have the required items!"),
+        MISSING_ITEM("missing-item", "&7- Missing {amount}x {item}", "amount", "item"),
+        NO_PERMISSION("no-permission", "&cYou don't have permission to do this!"),
+        ROTATION_FORCED("rotation-forced", "&6The black market items have been rotated!"),
+        ROTATION_NOT_LEADER("rotation-not-leader", "&cServer {server} performs the rotations of this network, force the rotation there.", "server"),
+        ADMIN_OPENED("admin-opened", "&eOpened admin menu"),
+        ITEM_ADDED("item-added", "&aItem added to the black market pool!"),
+        ITEM_REMOVED("item-removed", "&cItem removed from pool!"),
+        ITEM_NOT_FOUND("item-not-found", "&cItem not found!"),
+        COST_SAVED("cost-saved", "&aCost items saved!"),
+        WEIGHT_SET("weight-set", "&eWeight set to: &6{weight}", "weight"),
+        NO_ITEMS_POOL("no-items-pool", "&cNo items in the pool to rotate!"),
+        TIMER_NAME("timer-name", "&eRotation Timer"),
+        TIME_REMAINING("time-remaining", "&eTime until next rotation: &6{time}", "time"),
+        NEXT_ROTATION("next-rotation", "&7Next rotation: {time}", "time"),
+        ROTATION_INTERVAL("rotation-interval", "&7Items rotate every {hours} hours", "hours"),
+        SOLD_OUT("sold-out", "&cSOLD OUT"),
+        SOLD_OUT_LORE("sold-out-lore", "&7You already purchased this item"),
+        CONFIG_RELOADED("config-reloaded", "&aConfig reloaded successfully!"),
+        PLAYERS_ONLY("players-only", "This command can only be used by players!"),
+        DATA_LOADING("data-loading", "&eThe black market is still loading, it opens in a moment..."),
+        MIGRATE_USAGE("migrate-usage", "&cUsage: /{label} migrate <file|sqlite|network> <file|sqlite|network>", "label"),
+        MIGRATE_STARTED("migrate-started", "&eMigrating data from {from} to {to}...", "from", "to"),
+        MIGRATE_COMPLETE("migrate-complete", "&aMigration complete. Set storage.type to {to} and restart to use it.", "to"),
+        MIGRATE_FAILED("migrate-failed", "&cMigration failed: {error}", "error"),
+        STATS_HEADER("stats-header", "&6Black Market timings &7(count, p50, p99, max):"),
+        STATS_LINE("stats-line", "&e{metric}: &6{count} &7calls, &6{p50}&7/&6{p99}&7/&6{max} &7ms", "metric", "count", "p50", "p99", "max");
+
+        private final String key;
+        private final String defaultText;
+        private final String[] placeholders;
+
+        Message(String key, String defaultText, String... placeholders) {
+            this.key = key;
+            this.defaultText = defaultText;
+            this.placeholders = placeholders;
+        }
+    }
+
+    /**
+     * A parsed message: literal parts interleaved with placeholder slots
+     */
+    private static final class Template {
+        private static final String PROBE = "\u0000";
+
+        private final Component[] parts; // Literal parts, or null where a placeholder goes
+        private final int[] slots; // Placeholder index per part, -1 for literals
+        private final Style[] styles; // Style a placeholder value inherits from the codes before it
+        private final Component constant; // Whole message when it has no placeholders
+
+        private Template(List<Component> parts, List<Integer> slots, List<Style> styles) {
+            this.parts = parts.toArray(new Component[0]);
+            this.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+            this.styles = styles.toArray(new Style[0]);
+            this.constant = containsPlaceholder(this.slots) ? null : join(this.parts);
+        }
+
+        static Template compile(String text, String[] placeholders) {
+            List<Component> parts = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            List<Style> styles = new ArrayList<>();
+
+            String activeCodes = ""; // Legacy codes in effect at the current position
+            int literalStart = 0;
+            int position = 0;
+            while (position < text.length()) {
+                int slot = text.charAt(position) == '{' ? placeholderAt(text, position, placeholders) : -1;
+                if (slot == -1) {
+                    position++;
+                    continue;
+                }
+
+                String literal = text.substring(literalStart, position);
+                addLiteral(parts, slots, styles, activeCodes, literal);
+                activeCodes = activeCodes(activeCodes, literal);
+
+                parts.add(null);
+                slots.add(slot);
+                styles.add(styleOf(activeCodes));
+
+                position += placeholders[slot].length() + 2;
+                literalStart = position;
+            }
+            addLiteral(parts, slots, styles, activeCodes, text.substring(literalStart));
+
+            return new Template(parts, slots, styles);
+        }
+
+        Component render(Object[] values) {
+            if (constant != null) {
+                return constant;
+            }
+
+            TextComponent.Builder builder = Component.text();
+            for (int i = 0; i < parts.length; i++) {
+                if (slots[i] == -1) {
+                    builder.append(parts[i]);
+                } else {
+                    Object value = slots[i] < values.length ? values[slots[i]] : null;
+                    builder.append(Component.text(String.valueOf(value), styles[i]));
+                }
+            }
+            return builder.build();
+        }
+
+        private static void addLiteral(List<Component> parts, List<Integer> slots, List<Style> styles, String activeCodes, String literal) {
+            if (literal.isEmpty()) {
+                return;
+            }
+            parts.add(ItemUtils.translateColorCodes(activeCodes + literal));
+            slots.add(-1);
+            styles.add(null);
+        }
+
+        private static int placeholderAt(String text, int position, String[] placeholders) {
+            for (int i = 0; i < placeholders.length; i++) {
+                if (text.startsWith(placeholders[i] + "}", position + 1)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Legacy codes still in effect after the given text; a color code resets formatting codes
+         */
+        private static String activeCodes(String codes, String text) {
+            StringBuilder active = new StringBuilder(codes);
+            for (int i = 0; i + 1 < text.length(); i++) {
+                if (text.charAt(i) != '&') {
+                    continue;
+                }
+
+                char code = Character.toLowerCase(text.charAt(i + 1));
+                if ((code >= '0' && code <= '9') || (code >= 'a' && code <= 'f') || code == 'r') {
+                    active.setLength(0);
+                    active.append('&').append(code);
+                    i++;
+                } else if (code >= 'k' && code <= 'o') {
+                    active.append('&').append(code);
+                    i++;
+                }
+            }
+            return active.toString();
+        }
+
+        /**
+         * Style of text written right after the given legacy codes
+         */
+        private static Style styleOf(String codes) {
+            Style style = findStyle(ItemUtils.translateColorCodes(codes + PROBE));
+            return style != null ? style : Style.empty();
+        }
+
+        private static Style findStyle(Component component) {
+            if (component instanceof TextComponent text && text.content().contains(PROBE)) {
+                return text.style();
+            }
+            for (Component child : component.children()) {
+                Style style = findStyle(child);
+                if (style != null) {
+                    return style;
+                }
+            }
+            return null;
+        }
+
+        private static boolean containsPlaceholder(int[] slots) {
+            for (int slot : slots) {
+                if (slot != -1) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Component join(Component[] parts) {
+            if (parts.length == 0) {
+                return Component.empty();
+            }
+            if (parts.length == 1) {
+                return parts[0];
+            }
+            TextComponent.Builder builder = Component.text();
+            for (Component part : parts) {
+                builder.append(part);
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.blackmarket.utils;
+
+import com.blackmarket.utils.MetricsRegistry.Metric;
+import com.blackmarket.utils.MetricsRegistry.Snapshot;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends one CSV row per metric to metrics.csv on a fixed interval, covering
+ * the calls made during that interval. Once the file grows past its size limit
+ * it is moved to metrics.csv.old and a new file is started.
+ */
+public class MetricsLog {
+    private static final String HEADER = "timestamp,metric,count,mean_ms,p50_ms,p99_ms,max_ms\n";
+
+    private final JavaPlugin plugin;
+    private final MetricsRegistry metrics;
+    private final Path file;
+    private final Path oldFile;
+    private final long maxBytes;
+    private final Map<Metric, Snapshot> previous = new EnumMap<>(Metric.class);
+    private ScheduledTask task;
+
+    public MetricsLog(JavaPlugin plugin, MetricsRegistry metrics, long maxBytes) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        this.file = plugin.getDataFolder().toPath().resolve("metrics.csv");
+        this.oldFile = plugin.getDataFolder().toPath().resolve("metrics.csv.old");
+        this.maxBytes = maxBytes;
+        for (Metric metric : Metric.values()) {
+            previous.put(metric, metrics.getTimer(metric).snapshot());
+            metrics.getTimer(metric).windowMax();
+        }
+    }
+
+    public void start(long intervalSeconds) {
+        task = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, scheduled -> write(), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Append the rows of the interval that just ended. Runs off the main thread.
+     */
+    private synchronized void write() {
+        long timestamp = System.currentTimeMillis();
+        StringBuilder rows = new StringBuilder();
+        for (Metric metric : Metric.values()) {
+            MetricsRegistry.Timer timer = metrics.getTimer(metric);
+            Snapshot current = timer.snapshot();
+            Snapshot window = current.since(previous.get(metric), timer.windowMax());
+            previous.put(metric, current);
+
+            rows.append(timestamp).append(',').append(metric.getKey()).append(',').append(window.count())
+                .append(',').append(millis(window.meanNanos()))
+                .append(',').append(millis(window.percentileNanos(0.5)))
+                .append(',').append(millis(window.percentileNanos(0.99)))
+                .append(',').append(millis(window.maxNanos()))
+                .append('\n');
+        }
+
+        try {
+            if (Files.exists(file) && Files.size(file) >= maxBytes) {
+                Files.move(file, oldFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, HEADER, StandardCharsets.UTF_8);
+            }
+            Files.writeString(file, rows, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Nanoseconds as milliseconds with three decimals
+     */
+    public static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
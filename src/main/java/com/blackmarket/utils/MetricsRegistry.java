@@ -0,0 +1,157 @@
+package com.blackmarket.utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts and latency histograms for the plugin's hot paths.
+ * Recording a call is a handful of atomic adds, so timers stay on all the time
+ * and can be recorded from any thread. Latencies go into log-scale buckets with
+ * four buckets per power of two, so percentiles are within 25% of the real value.
+ */
+public class MetricsRegistry {
+    private final Map<Metric, Timer> timers = new EnumMap<>(Metric.class);
+
+    public MetricsRegistry() {
+        for (Metric metric : Metric.values()) {
+            timers.put(metric, new Timer());
+        }
+    }
+
+    /**
+     * Record one call that started at the given System.nanoTime()
+     */
+    public void record(Metric metric, long startNanos) {
+        timers.get(metric).record(System.nanoTime() - startNanos);
+    }
+
+    public Timer getTimer(Metric metric) {
+        return timers.get(metric);
+    }
+
+    /**
+     * Timed paths with the name they are reported under
+     */
+    public enum Metric {
+        SAVE_DATA("save-data"),
+        LOAD_DATA("load-data"),
+        ROTATION("rotation"),
+        SHOP_OPEN("shop-open"),
+        PURCHASE("purchase");
+
+        private final String key;
+
+        Metric(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * Latency histogram of one path
+     */
+    public static final class Timer {
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator windowMaxNanos = new LongAccumulator(Math::max, 0); // Reset by each windowMax() call
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            windowMaxNanos.accumulate(nanos);
+        }
+
+        /**
+         * Everything recorded since the plugin started
+         */
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new Snapshot(count.sum(), totalNanos.sum(), maxNanos.get(), counts);
+        }
+
+        /**
+         * Longest call since the previous call of this method
+         */
+        public long windowMax() {
+            return windowMaxNanos.getThenReset();
+        }
+
+        private static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * Largest value that falls into a bucket
+         */
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+
+    /**
+     * Counts of a timer at one point in time; subtract an older snapshot to get a window
+     */
+    public record Snapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+        /**
+         * Calls recorded after the given older snapshot, with the longest of them
+         */
+        public Snapshot since(Snapshot older, long windowMaxNanos) {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i] - older.buckets[i];
+            }
+            return new Snapshot(count - older.count, totalNanos - older.totalNanos, windowMaxNanos, counts);
+        }
+
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile, capped at the max
+         */
+        public long percentileNanos(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(Timer.upperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.blackmarket.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseCacheTest {
+    private static final long GRACE_MILLIS = 1000;
+
+    private final UUID player = UUID.randomUUID();
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+    private final PurchaseCache.Rotation rotation = new PurchaseCache.Rotation(List.of(first, second), 0);
+
+    @Test
+    void recordsEachPurchaseOnce() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(), 0, rotation);
+
+        assertTrue(cache.add(player, first, rotation));
+        assertFalse(cache.add(player, first, rotation));
+        assertTrue(cache.contains(player, first, rotation));
+        assertFalse(cache.contains(player, second, rotation));
+    }
+
+    @Test
+    void refusesPlayersThatAreNotLoaded() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+
+        assertFalse(cache.isLoaded(player));
+        assertFalse(cache.add(player, first, rotation));
+        assertFalse(cache.contains(player, first, rotation));
+    }
+
+    @Test
+    void refusesItemsOutsideTheRotation() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(), 0, rotation);
+
+        assertFalse(cache.add(player, UUID.randomUUID(), rotation));
+    }
+
+    @Test
+    void tracksOnlyTheFirstMaxSlotsItems() {
+        List<UUID> slots = new ArrayList<>();
+        for (int i = 0; i <= PurchaseCache.MAX_SLOTS; i++) {
+            slots.add(UUID.randomUUID());
+        }
+        PurchaseCache.Rotation wide = new PurchaseCache.Rotation(slots, 0);
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(), 0, wide);
+
+        assertTrue(cache.add(player, slots.get(PurchaseCache.MAX_SLOTS - 1), wide));
+        assertFalse(cache.add(player, slots.get(PurchaseCache.MAX_SLOTS), wide));
+    }
+
+    @Test
+    void rotationClearsPurchases() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(first), 0, rotation);
+        PurchaseCache.Rotation next = new PurchaseCache.Rotation(List.of(first, second), 1);
+
+        assertTrue(cache.contains(player, first, rotation));
+        assertFalse(cache.contains(player, first, next));
+        assertTrue(cache.add(player, first, next));
+    }
+
+    @Test
+    void purchasesLoadedBeforeARotationAreDropped() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        PurchaseCache.Rotation next = new PurchaseCache.Rotation(List.of(first, second), 1);
+        cache.put(player, Set.of(first), 0, next);
+
+        assertTrue(cache.isLoaded(player));
+        assertFalse(cache.contains(player, first, next));
+    }
+
+    @Test
+    void reloadMergesWithPurchasesMadeMeanwhile() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(), 0, rotation);
+        cache.add(player, first, rotation);
+
+        cache.put(player, Set.of(second), 0, rotation);
+
+        assertTrue(cache.contains(player, first, rotation));
+        assertTrue(cache.contains(player, second, rotation));
+    }
+
+    @Test
+    void removedPurchaseCanBeMadeAgain() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(), 0, rotation);
+        cache.add(player, first, rotation);
+
+        cache.removePurchase(player, first, rotation);
+
+        assertFalse(cache.contains(player, first, rotation));
+        assertTrue(cache.add(player, first, rotation));
+    }
+
+    @Test
+    void releasedPlayersAreEvictedAfterTheGracePeriod() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(first), 0, rotation);
+        cache.release(player, 0);
+
+        cache.evictExpired(GRACE_MILLIS - 1);
+        assertTrue(cache.isLoaded(player));
+
+        cache.evictExpired(GRACE_MILLIS);
+        assertFalse(cache.isLoaded(player));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void retainedPlayersAreNotEvicted() {
+        PurchaseCache cache = new PurchaseCache(100, GRACE_MILLIS);
+        cache.put(player, Set.of(), 0, rotation);
+        cache.release(player, 0);
+        cache.retain(player);
+
+        cache.evictExpired(GRACE_MILLIS * 10);
+
+        assertTrue(cache.isLoaded(player));
+    }
+
+    @Test
+    void fullCacheEvictsReleasedPlayersOldestFirst() {
+        PurchaseCache cache = new PurchaseCache(2, GRACE_MILLIS);
+        UUID online = UUID.randomUUID();
+        UUID left = UUID.randomUUID();
+        UUID leftLater = UUID.randomUUID();
+        cache.put(online, Set.of(), 0, rotation);
+        cache.put(left, Set.of(), 0, rotation);
+        cache.release(left, 0);
+        cache.put(leftLater, Set.of(), 0, rotation);
+        cache.release(leftLater, 1);
+
+        cache.put(player, Set.of(), 0, rotation);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.isLoaded(online));
+        assertTrue(cache.isLoaded(player));
+        assertFalse(cache.isLoaded(left));
+        assertFalse(cache.isLoaded(leftLater));
+    }
+
+    @Test
+    void keepsEntriesIntactAcrossGrowthAndRemoval() {
+        PurchaseCache cache = new PurchaseCache(10_000, GRACE_MILLIS);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            players.add(uuid);
+            cache.put(uuid, i % 2 == 0 ? Set.of(first) : Set.of(second), 0, rotation);
+        }
+
+        // Evict every other player, which shifts the probe runs of the others
+        for (int i = 0; i < players.size(); i += 2) {
+            cache.release(players.get(i), 0);
+        }
+        cache.evictExpired(GRACE_MILLIS);
+
+        assertEquals(500, cache.size());
+        for (int i = 0; i < players.size(); i++) {
+            UUID uuid = players.get(i);
+            if (i % 2 == 0) {
+                assertFalse(cache.isLoaded(uuid));
+            } else {
+                assertTrue(cache.contains(uuid, second, rotation));
+                assertFalse(cache.contains(uuid, first, rotation));
+            }
+        }
+    }
+}
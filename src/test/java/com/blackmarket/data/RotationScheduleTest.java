@@ -0,0 +1,98 @@
+package com.blackmarket.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RotationScheduleTest {
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private static long utc(String time) {
+        return Instant.parse(time).toEpochMilli();
+    }
+
+    private static long next(String expression, String after) {
+        return RotationSchedule.cron(expression, ZoneOffset.UTC).next(utc(after));
+    }
+
+    @Test
+    void intervalCountsFromThePreviousRotation() {
+        RotationSchedule schedule = RotationSchedule.interval(HOUR);
+
+        assertEquals(5 * HOUR, schedule.next(4 * HOUR));
+    }
+
+    @Test
+    void intervalCatchUpStaysOnTheGrid() {
+        RotationSchedule schedule = RotationSchedule.interval(10);
+
+        assertEquals(-1, schedule.latestDue(0, 9));
+        assertEquals(10, schedule.latestDue(0, 10));
+        assertEquals(30, schedule.latestDue(0, 35));
+    }
+
+    @Test
+    void cronRunsDailyAtTheGivenTime() {
+        assertEquals(utc("2024-01-01T18:00:00Z"), next("0 18 * * *", "2024-01-01T12:00:00Z"));
+        // Strictly after: a rotation at 18:00 is followed by the next day's
+        assertEquals(utc("2024-01-02T18:00:00Z"), next("0 18 * * *", "2024-01-01T18:00:00Z"));
+    }
+
+    @Test
+    void cronSkipsToTheNextMatchingWeekday() {
+        // 2024-01-05 is a Friday
+        assertEquals(utc("2024-01-08T09:00:00Z"), next("0 9 * * 1-5", "2024-01-05T10:00:00Z"));
+    }
+
+    @Test
+    void cronSundayIsZeroOrSeven() {
+        // 2024-01-07 is a Sunday
+        assertEquals(utc("2024-01-07T00:00:00Z"), next("0 0 * * 0", "2024-01-05T00:00:00Z"));
+        assertEquals(utc("2024-01-07T00:00:00Z"), next("0 0 * * 7", "2024-01-05T00:00:00Z"));
+    }
+
+    @Test
+    void cronSupportsStepsAndLists() {
+        assertEquals(utc("2024-01-01T10:15:00Z"), next("*/15 * * * *", "2024-01-01T10:07:00Z"));
+        assertEquals(utc("2024-01-01T12:00:00Z"), next("0 0,12 * * *", "2024-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void cronMatchesEitherRestrictedDayField() {
+        // Day 13 or any Friday: Friday 2024-09-06 comes before the 13th
+        assertEquals(utc("2024-09-06T00:00:00Z"), next("0 0 13 * 5", "2024-09-01T00:00:00Z"));
+        assertEquals(utc("2024-09-13T00:00:00Z"), next("0 0 13 * 5", "2024-09-06T00:00:00Z"));
+    }
+
+    @Test
+    void cronFindsLeapDays() {
+        assertEquals(utc("2028-02-29T00:00:00Z"), next("0 0 29 2 *", "2024-03-01T00:00:00Z"));
+    }
+
+    @Test
+    void cronMovesTimesSkippedByDaylightSavingForward() {
+        // 02:30 does not exist in Berlin on 2024-03-31; it becomes 03:30 CEST
+        RotationSchedule schedule = RotationSchedule.cron("30 2 * * *", ZoneId.of("Europe/Berlin"));
+
+        assertEquals(utc("2024-03-31T01:30:00Z"), schedule.next(utc("2024-03-30T12:00:00Z")));
+    }
+
+    @Test
+    void cronCatchUpRunsOnlyTheLatestMissedRotation() {
+        RotationSchedule schedule = RotationSchedule.cron("0 * * * *", ZoneOffset.UTC);
+
+        assertEquals(utc("2024-01-01T15:00:00Z"), schedule.latestDue(utc("2024-01-01T10:00:00Z"), utc("2024-01-01T15:30:00Z")));
+        assertEquals(-1, schedule.latestDue(utc("2024-01-01T10:00:00Z"), utc("2024-01-01T10:30:00Z")));
+    }
+
+    @Test
+    void malformedCronIsRejected() {
+        for (String expression : new String[] {"0 18 * *", "60 * * * *", "5-1 * * * *", "a * * * *", "0 0 0 * *"}) {
+            assertThrows(IllegalArgumentException.class, () -> RotationSchedule.cron(expression, ZoneOffset.UTC), expression);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.blackmarket.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+    private static final int MAGIC = 0x424D4431;
+
+    @TempDir
+    Path directory;
+
+    private final UUID player = UUID.randomUUID();
+    private final UUID otherPlayer = UUID.randomUUID();
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+
+    /**
+     * A pool item with its serialized form already cached, so writing it needs no item stack
+     */
+    private static MarketItem poolItem(int weight) {
+        return MarketItem.stored(UUID.randomUUID(), null, List.of(), weight, new byte[] {1, 2, 3}, List.of());
+    }
+
+    private static Set<UUID> purchasesOf(SnapshotFile.Reader reader, UUID player) {
+        Set<UUID> items = new HashSet<>();
+        reader.readPurchases(player, items::add);
+        return items;
+    }
+
+    @Test
+    void roundTripsTheRotationAndPurchases() throws IOException {
+        List<MarketItem> pool = List.of(poolItem(1), poolItem(5));
+        StagedRotation staged = new StagedRotation(List.of(second), 9000);
+        Map<UUID, Set<UUID>> purchases = Map.of(player, Set.of(first, second), otherPlayer, Set.of(second));
+        Path file = directory.resolve("data.bin");
+
+        SnapshotFile.write(file, new DataSnapshot(pool, List.of(first, second), 1234, staged), purchases);
+
+        SnapshotFile.Reader reader = SnapshotFile.Reader.open(file);
+        try {
+            assertEquals(1234, reader.lastRotationTime());
+            assertEquals(List.of(first, second), reader.readActiveItems());
+            assertEquals(staged, reader.readStagedRotation());
+            assertEquals(2, reader.poolSize());
+            assertEquals(pool.get(0).getId(), reader.poolId(0));
+            assertEquals(pool.get(1).getId(), reader.poolId(1));
+            assertEquals(Set.of(first, second), purchasesOf(reader, player));
+            assertEquals(Set.of(second), purchasesOf(reader, otherPlayer));
+            assertEquals(Set.of(), purchasesOf(reader, UUID.randomUUID()));
+
+            List<UUID> all = new ArrayList<>();
+            reader.readPurchases((playerUuid, itemId) -> all.add(itemId));
+            assertEquals(3, all.size());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void storesNoStagedRotationAsNull() throws IOException {
+        Path file = directory.resolve("data.bin");
+
+        SnapshotFile.write(file, new DataSnapshot(List.of(), List.of(first), 1000), Map.of());
+
+        SnapshotFile.Reader reader = SnapshotFile.Reader.open(file);
+        try {
+            assertNull(reader.readStagedRotation());
+            assertEquals(List.of(first), reader.readActiveItems());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void rewriteRotationKeepsPoolAndPurchases() throws IOException {
+        List<MarketItem> pool = List.of(poolItem(1), poolItem(2));
+        Path source = directory.resolve("source.bin");
+        Path target = directory.resolve("target.bin");
+        SnapshotFile.write(source, new DataSnapshot(pool, List.of(first), 1000), Map.of(player, Set.of(first)));
+
+        SnapshotFile.Reader sourceReader = SnapshotFile.Reader.open(source);
+        try {
+            StagedRotation staged = new StagedRotation(List.of(first), 3000);
+            SnapshotFile.rewriteRotation(target, sourceReader, new DataSnapshot(pool, List.of(second), 2000, staged), null);
+        } finally {
+            sourceReader.close();
+        }
+
+        SnapshotFile.Reader reader = SnapshotFile.Reader.open(target);
+        try {
+            assertEquals(2000, reader.lastRotationTime());
+            assertEquals(List.of(second), reader.readActiveItems());
+            assertEquals(new StagedRotation(List.of(first), 3000), reader.readStagedRotation());
+            assertEquals(pool.get(1).getId(), reader.poolId(1));
+            assertEquals(Set.of(first), purchasesOf(reader, player));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void rewritePurchasesKeepsTheRotation() throws IOException {
+        Path source = directory.resolve("source.bin");
+        Path target = directory.resolve("target.bin");
+        StagedRotation staged = new StagedRotation(List.of(second), 3000);
+        SnapshotFile.write(source, new DataSnapshot(List.of(poolItem(1)), List.of(first), 1000, staged), Map.of());
+
+        SnapshotFile.Reader sourceReader = SnapshotFile.Reader.open(source);
+        try {
+            SnapshotFile.rewritePurchases(target, sourceReader, Map.of(player, Set.of(first)));
+        } finally {
+            sourceReader.close();
+        }
+
+        SnapshotFile.Reader reader = SnapshotFile.Reader.open(target);
+        try {
+            assertEquals(1000, reader.lastRotationTime());
+            assertEquals(List.of(first), reader.readActiveItems());
+            assertEquals(staged, reader.readStagedRotation());
+            assertEquals(1, reader.poolSize());
+            assertEquals(Set.of(first), purchasesOf(reader, player));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void readsVersion2FilesWithoutAStagedRotation() throws IOException {
+        Path file = directory.resolve("v2.bin");
+        writeLegacy(file, 2);
+
+        SnapshotFile.Reader reader = SnapshotFile.Reader.open(file);
+        try {
+            assertTrue(reader.canCopyPurchases());
+            assertEquals(500, reader.lastRotationTime());
+            assertEquals(List.of(first), reader.readActiveItems());
+            assertNull(reader.readStagedRotation());
+            assertEquals(Set.of(first), purchasesOf(reader, player));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void readsVersion1GroupedPurchases() throws IOException {
+        Path file = directory.resolve("v1.bin");
+        writeLegacy(file, 1);
+
+        SnapshotFile.Reader reader = SnapshotFile.Reader.open(file);
+        try {
+            assertFalse(reader.canCopyPurchases());
+            assertNull(reader.readStagedRotation());
+            assertEquals(Set.of(first), purchasesOf(reader, player));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void rewritingAnOlderFileUpgradesIt() throws IOException {
+        Path source = directory.resolve("v2.bin");
+        Path target = directory.resolve("target.bin");
+        writeLegacy(source, 2);
+
+        SnapshotFile.Reader sourceReader = SnapshotFile.Reader.open(source);
+        try {
+            SnapshotFile.rewritePurchases(target, sourceReader, Map.of(otherPlayer, Set.of(first)));
+        } finally {
+            sourceReader.close();
+        }
+
+        SnapshotFile.Reader reader = SnapshotFile.Reader.open(target);
+        try {
+            assertEquals(List.of(first), reader.readActiveItems());
+            assertNull(reader.readStagedRotation());
+            assertEquals(Set.of(), purchasesOf(reader, player));
+            assertEquals(Set.of(first), purchasesOf(reader, otherPlayer));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void rejectsUnknownVersionsAndOtherFiles() throws IOException {
+        Path future = directory.resolve("future.bin");
+        writeLegacy(future, 99);
+        assertThrows(IOException.class, () -> SnapshotFile.Reader.open(future));
+
+        Path garbage = directory.resolve("garbage.bin");
+        Files.write(garbage, new byte[64]);
+        assertThrows(IOException.class, () -> SnapshotFile.Reader.open(garbage));
+    }
+
+    /**
+     * A file in an older layout with an empty pool, one active item and one purchase by the player.
+     * Version 1 groups purchases per player; later versions store sorted (player, item) records.
+     */
+    private void writeLegacy(Path file, int version) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(version);
+            out.writeLong(500);
+
+            long activeOffset = out.size();
+            out.writeInt(1);
+            writeUuid(out, first);
+
+            long purchasesOffset = out.size();
+            out.writeInt(1);
+            writeUuid(out, player);
+            if (version == 1) {
+                out.writeInt(1);
+            }
+            writeUuid(out, first);
+
+            long indexOffset = out.size();
+            out.writeInt(0);
+
+            out.writeLong(activeOffset);
+            out.writeLong(purchasesOffset);
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,115 @@
+package com.blackmarket.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedSamplerTest {
+
+    /**
+     * Pool items with the given weights; the sampler only reads ids and weights, so no item stacks are needed
+     */
+    private static List<MarketItem> pool(int... weights) {
+        List<MarketItem> items = new ArrayList<>();
+        for (int weight : weights) {
+            items.add(MarketItem.stored(UUID.randomUUID(), null, List.of(), weight));
+        }
+        return items;
+    }
+
+    @Test
+    void samplesDistinctItems() {
+        List<MarketItem> items = pool(1, 2, 3, 4, 5, 6, 7, 8);
+        WeightedSampler sampler = new WeightedSampler(items);
+
+        List<UUID> sample = sampler.sample(5, new Random(1));
+
+        assertEquals(5, sample.size());
+        assertEquals(5, new HashSet<>(sample).size());
+    }
+
+    @Test
+    void sampleIsCappedAtThePoolSize() {
+        List<MarketItem> items = pool(1, 1, 1);
+        WeightedSampler sampler = new WeightedSampler(items);
+
+        List<UUID> sample = sampler.sample(10, new Random(1));
+
+        assertEquals(3, new HashSet<>(sample).size());
+    }
+
+    @Test
+    void emptyPoolSamplesNothing() {
+        WeightedSampler sampler = new WeightedSampler(List.of());
+
+        assertEquals(0, sampler.size());
+        assertTrue(sampler.sample(3, new Random(1)).isEmpty());
+    }
+
+    @Test
+    void zeroWeightItemsComeAfterWeightedOnes() {
+        List<MarketItem> items = pool(0, 5, 0);
+        WeightedSampler sampler = new WeightedSampler(items);
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100; i++) {
+            List<UUID> sample = sampler.sample(2, random);
+            assertEquals(items.get(1).getId(), sample.get(0));
+            assertEquals(2, new HashSet<>(sample).size());
+        }
+    }
+
+    @Test
+    void allZeroWeightsSampleUniformly() {
+        List<MarketItem> items = pool(0, 0, 0, 0);
+        WeightedSampler sampler = new WeightedSampler(items);
+
+        assertEquals(4, new HashSet<>(sampler.sample(4, new Random(1))).size());
+    }
+
+    @Test
+    void picksInProportionToWeight() {
+        List<MarketItem> items = pool(1, 3);
+        WeightedSampler sampler = new WeightedSampler(items);
+        Random random = new Random(42);
+
+        // Repeated samples also check that picked weights are put back
+        int heavy = 0;
+        int draws = 20_000;
+        for (int i = 0; i < draws; i++) {
+            if (sampler.sample(1, random).get(0).equals(items.get(1).getId())) {
+                heavy++;
+            }
+        }
+
+        assertEquals(0.75, (double) heavy / draws, 0.02);
+    }
+
+    @Test
+    void secondPickFollowsTheRemainingWeights() {
+        List<MarketItem> items = pool(8, 1, 1);
+        WeightedSampler sampler = new WeightedSampler(items);
+        Random random = new Random(7);
+
+        // Once the heavy item is taken, the two light ones are equally likely
+        int lightFirst = 0;
+        int heavyFirst = 0;
+        for (int i = 0; i < 20_000; i++) {
+            List<UUID> sample = sampler.sample(2, random);
+            if (sample.get(0).equals(items.get(0).getId())) {
+                heavyFirst++;
+                if (sample.get(1).equals(items.get(1).getId())) {
+                    lightFirst++;
+                }
+            }
+        }
+
+        assertEquals(0.5, (double) lightFirst / heavyFirst, 0.03);
+    }
+}
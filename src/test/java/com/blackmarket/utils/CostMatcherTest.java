@@ -0,0 +1,110 @@
+package com.blackmarket.utils;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockbukkit.mockbukkit.MockBukkit;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CostMatcherTest {
+    private Inventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        MockBukkit.mock();
+        inventory = Bukkit.createInventory(null, 36);
+    }
+
+    @AfterEach
+    void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    private static ItemStack named(Material material, int amount, String name) {
+        ItemStack item = new ItemStack(material, amount);
+        ItemMeta meta = item.getItemMeta();
+        meta.displayName(Component.text(name));
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    private int count(Material material) {
+        int total = 0;
+        for (ItemStack item : inventory.getContents()) {
+            if (item != null && item.getType() == material) {
+                total += item.getAmount();
+            }
+        }
+        return total;
+    }
+
+    @Test
+    void takesTheCostAcrossSeveralStacks() {
+        inventory.setItem(0, new ItemStack(Material.DIAMOND, 3));
+        inventory.setItem(5, new ItemStack(Material.DIAMOND, 4));
+        inventory.setItem(9, new ItemStack(Material.EMERALD, 2));
+        CostMatcher matcher = new CostMatcher(List.of(new ItemStack(Material.DIAMOND, 5), new ItemStack(Material.EMERALD, 2)));
+
+        CostMatcher.Plan plan = matcher.plan(inventory);
+
+        assertTrue(plan.isSatisfied());
+        assertTrue(plan.getShortfalls().isEmpty());
+        assertTrue(plan.apply(inventory));
+        assertEquals(2, count(Material.DIAMOND));
+        assertEquals(0, count(Material.EMERALD));
+    }
+
+    @Test
+    void equalCostStacksAreAddedUp() {
+        inventory.setItem(0, new ItemStack(Material.DIAMOND, 4));
+        CostMatcher matcher = new CostMatcher(List.of(new ItemStack(Material.DIAMOND, 2), new ItemStack(Material.DIAMOND, 3)));
+
+        CostMatcher.Plan plan = matcher.plan(inventory);
+
+        assertFalse(plan.isSatisfied());
+        assertEquals(1, plan.getShortfalls().size());
+        assertEquals(1, plan.getShortfalls().get(0).missing());
+    }
+
+    @Test
+    void unmetCostLeavesTheInventoryAlone() {
+        inventory.setItem(0, new ItemStack(Material.DIAMOND, 1));
+        CostMatcher matcher = new CostMatcher(List.of(new ItemStack(Material.DIAMOND, 5), new ItemStack(Material.GOLD_INGOT, 1)));
+
+        CostMatcher.Plan plan = matcher.plan(inventory);
+
+        assertFalse(plan.isSatisfied());
+        assertEquals(2, plan.getShortfalls().size());
+        assertFalse(plan.apply(inventory));
+        assertEquals(1, count(Material.DIAMOND));
+    }
+
+    @Test
+    void stacksWithDifferentMetaDoNotPay() {
+        inventory.setItem(0, named(Material.DIAMOND, 5, "Shiny"));
+        CostMatcher plain = new CostMatcher(List.of(new ItemStack(Material.DIAMOND, 5)));
+        CostMatcher otherName = new CostMatcher(List.of(named(Material.DIAMOND, 5, "Dull")));
+        CostMatcher sameName = new CostMatcher(List.of(named(Material.DIAMOND, 5, "Shiny")));
+
+        assertFalse(plain.plan(inventory).isSatisfied());
+        assertFalse(otherName.plan(inventory).isSatisfied());
+        assertTrue(sameName.plan(inventory).isSatisfied());
+    }
+
+    @Test
+    void emptyCostIsAlwaysMet() {
+        CostMatcher matcher = new CostMatcher(List.of());
+
+        assertTrue(matcher.plan(inventory).isSatisfied());
+        assertTrue(matcher.plan(inventory).apply(inventory));
+    }
+}
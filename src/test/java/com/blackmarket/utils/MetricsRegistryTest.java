@@ -0,0 +1,96 @@
+package com.blackmarket.utils;
+
+import com.blackmarket.utils.MetricsRegistry.Metric;
+import com.blackmarket.utils.MetricsRegistry.Snapshot;
+import com.blackmarket.utils.MetricsRegistry.Timer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void emptyTimerReportsZero() {
+        Snapshot snapshot = new MetricsRegistry().getTimer(Metric.PURCHASE).snapshot();
+
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.meanNanos());
+        assertEquals(0, snapshot.percentileNanos(0.99));
+    }
+
+    @Test
+    void smallValuesHaveExactBuckets() {
+        Timer timer = new MetricsRegistry().getTimer(Metric.PURCHASE);
+        for (long nanos = 0; nanos < 4; nanos++) {
+            timer.record(nanos);
+        }
+
+        Snapshot snapshot = timer.snapshot();
+        assertEquals(0, snapshot.percentileNanos(0.25));
+        assertEquals(1, snapshot.percentileNanos(0.5));
+        assertEquals(3, snapshot.percentileNanos(1.0));
+    }
+
+    @Test
+    void bucketsStayWithinAQuarterOfTheValue() {
+        for (long nanos = 4; nanos < 1L << 40; nanos = nanos * 3 / 2 + 1) {
+            Timer timer = new MetricsRegistry().getTimer(Metric.PURCHASE);
+            timer.record(nanos);
+            timer.record(nanos * 100); // Keeps the max from capping the bucket bound
+
+            long bound = timer.snapshot().percentileNanos(0.5);
+            assertTrue(bound >= nanos && bound <= nanos + nanos / 4, "bucket bound " + bound + " for " + nanos);
+        }
+    }
+
+    @Test
+    void percentilesAreCappedAtTheMax() {
+        Timer timer = new MetricsRegistry().getTimer(Metric.PURCHASE);
+        timer.record(1000);
+
+        assertEquals(1000, timer.snapshot().percentileNanos(0.99));
+        assertEquals(1000, timer.snapshot().maxNanos());
+    }
+
+    @Test
+    void percentilesFollowTheDistribution() {
+        Timer timer = new MetricsRegistry().getTimer(Metric.PURCHASE);
+        for (long micros = 1; micros <= 1000; micros++) {
+            timer.record(micros * 1000);
+        }
+
+        Snapshot snapshot = timer.snapshot();
+        assertEquals(1000, snapshot.count());
+        assertEquals(500_500, snapshot.meanNanos());
+        assertEquals(500_000, snapshot.percentileNanos(0.5), 500_000 / 4.0);
+        assertEquals(990_000, snapshot.percentileNanos(0.99), 990_000 / 4.0);
+    }
+
+    @Test
+    void negativeDurationsCountAsZero() {
+        Timer timer = new MetricsRegistry().getTimer(Metric.PURCHASE);
+        timer.record(-5);
+
+        Snapshot snapshot = timer.snapshot();
+        assertEquals(1, snapshot.count());
+        assertEquals(0, snapshot.maxNanos());
+    }
+
+    @Test
+    void windowHoldsOnlyLaterCalls() {
+        Timer timer = new MetricsRegistry().getTimer(Metric.PURCHASE);
+        timer.record(5_000_000);
+        Snapshot before = timer.snapshot();
+        timer.windowMax();
+        timer.record(1000);
+        timer.record(2000);
+
+        Snapshot window = timer.snapshot().since(before, timer.windowMax());
+
+        assertEquals(2, window.count());
+        assertEquals(3000, window.totalNanos());
+        assertEquals(2000, window.maxNanos());
+        assertTrue(window.percentileNanos(1.0) <= 2000);
+        assertEquals(0, timer.windowMax());
+    }
+}